@@ -0,0 +1,259 @@
+package com.github.catstiger.common.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pre-compiled plan copying field values from a source bean, or a {@link Map}, to a target bean. Fields are matched by name, static and final fields of
+ * the target are ignored.
+ * <p>
+ * {@code null} source values are never copied, the target field keeps its value. This holds for every field, whatever its type.
+ * <p>
+ * When both fields have the same primitive type, the value is copied by a single {@link MethodHandle} combining the getter and the setter, primitive
+ * values are never boxed on this path. Reference values are copied without conversion when the target field type is assignable from the source field
+ * type. Other matched fields are copied through the {@link Converter} given by the caller, and numbers
+ * are converted between the numeric types if no converter is given. Fields which can not be converted are skipped.
+ * <p>
+ * Instances are cached by {@link ReflectUtil#copier(Class, Class)} and {@link ReflectUtil#copier(Class)}, and are safe for concurrent use.
+ *
+ * @see ReflectUtil#copy(Object, Object)
+ * @see ReflectUtil#fromMap(Map, Class)
+ */
+public final class BeanCopier {
+  private static final MethodType COPY_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+  /**
+   * Marks a value which can not be converted to the target type.
+   */
+  private static final Object SKIP = new Object();
+
+  /**
+   * Converts a value to the type of the target field.
+   */
+  @FunctionalInterface
+  public interface Converter {
+    /**
+     * Converts the value.
+     *
+     * @param value the value to convert, never {@code null}
+     * @param targetType the type of the target field
+     * @return the converted value, {@code null} to leave a primitive target field unchanged
+     */
+    Object convert(Object value, Class<?> targetType);
+  }
+
+  private final Class<?> sourceType;
+
+  private final Class<?> targetType;
+
+  /**
+   * (Object target, Object source)void, for fields of the same primitive type.
+   */
+  private final MethodHandle[] direct;
+
+  /**
+   * Source and target accessors of the reference fields of compatible types, copied unless the value is {@code null}.
+   */
+  private final FieldAccessor[] assignableSources;
+
+  private final FieldAccessor[] assignableTargets;
+
+  /**
+   * Source accessors of the fields which need converting, {@code null} elements when the source is a {@link Map}.
+   */
+  private final FieldAccessor[] sources;
+
+  private final FieldAccessor[] targets;
+
+  private final String[] names;
+
+  private final Class<?>[] types;
+
+  /**
+   * Same as {@link #types}, primitive types are replaced by their wrappers.
+   */
+  private final Class<?>[] wrappers;
+
+  /**
+   * Creates a plan copying from beans of {@code sourceType}, or from {@link Map} if {@code sourceType} is {@code null}.
+   */
+  BeanCopier(Class<?> sourceType, Class<?> targetType) {
+    Map<String, FieldAccessor> sourceFields = (sourceType == null ? null : fieldsByName(sourceType, false));
+    List<MethodHandle> directList = new ArrayList<>();
+    List<FieldAccessor> assignableSourceList = new ArrayList<>();
+    List<FieldAccessor> assignableTargetList = new ArrayList<>();
+    List<FieldAccessor> sourceList = new ArrayList<>();
+    List<FieldAccessor> targetList = new ArrayList<>();
+
+    for (Map.Entry<String, FieldAccessor> entry : fieldsByName(targetType, true).entrySet()) {
+      FieldAccessor target = entry.getValue();
+      Class<?> type = target.getField().getType();
+      if (sourceFields == null) {
+        sourceList.add(null);
+        targetList.add(target);
+        continue;
+      }
+
+      FieldAccessor source = sourceFields.get(entry.getKey());
+      if (source == null) {
+        continue;
+      }
+      Class<?> from = source.getField().getType();
+      if (from == type && type.isPrimitive()) {
+        // target.set(source.get()), typed exactly so that primitives are not boxed
+        MethodHandle getter = source.typedGetter().asType(MethodType.methodType(type, Object.class));
+        directList.add(MethodHandles.filterArguments(target.typedSetter(), 1, getter).asType(COPY_TYPE));
+      } else if (!from.isPrimitive() && !type.isPrimitive() && type.isAssignableFrom(from)) {
+        assignableSourceList.add(source);
+        assignableTargetList.add(target);
+      } else {
+        sourceList.add(source);
+        targetList.add(target);
+      }
+    }
+
+    this.sourceType = sourceType;
+    this.targetType = targetType;
+    this.direct = directList.toArray(new MethodHandle[directList.size()]);
+    this.assignableSources = assignableSourceList.toArray(new FieldAccessor[assignableSourceList.size()]);
+    this.assignableTargets = assignableTargetList.toArray(new FieldAccessor[assignableTargetList.size()]);
+    this.sources = sourceList.toArray(new FieldAccessor[sourceList.size()]);
+    this.targets = targetList.toArray(new FieldAccessor[targetList.size()]);
+    this.names = new String[targets.length];
+    this.types = new Class<?>[targets.length];
+    this.wrappers = new Class<?>[targets.length];
+    for (int i = 0; i < targets.length; i++) {
+      names[i] = targets[i].getField().getName();
+      types[i] = targets[i].getField().getType();
+      wrappers[i] = MethodType.methodType(types[i]).wrap().returnType();
+    }
+  }
+
+  /**
+   * Copies the matched fields from the source bean to the target bean, {@code null} values are ignored.
+   *
+   * @param source the source bean, must be an instance of the source type of this plan
+   * @param target the target bean, must be an instance of the target type of this plan
+   * @param converter converts the values of fields of incompatible types, may be {@code null}
+   */
+  public void copy(Object source, Object target, Converter converter) {
+    if (sourceType == null) {
+      throw new IllegalStateException("Not a bean copier of " + targetType.getName());
+    }
+    for (MethodHandle mh : direct) {
+      try {
+        mh.invokeExact(target, source);
+      } catch (Throwable ex) {
+        throw FieldAccessor.rethrow(ex);
+      }
+    }
+    for (int i = 0; i < assignableTargets.length; i++) {
+      Object value = assignableSources[i].get(source);
+      if (value != null) {
+        assignableTargets[i].set(target, value);
+      }
+    }
+    for (int i = 0; i < targets.length; i++) {
+      Object value = sources[i].get(source);
+      if (value != null) {
+        set(i, target, value, converter);
+      }
+    }
+  }
+
+  /**
+   * Copies the values of the map to the fields of the target bean, keys of the map are the field names. {@code null} values are ignored.
+   *
+   * @param source the source map
+   * @param target the target bean, must be an instance of the target type of this plan
+   * @param converter converts the values of incompatible types, may be {@code null}
+   */
+  public void fill(Map<String, ?> source, Object target, Converter converter) {
+    if (sourceType != null) {
+      throw new IllegalStateException("Not a map copier of " + targetType.getName());
+    }
+    for (int i = 0; i < targets.length; i++) {
+      Object value = source.get(names[i]);
+      if (value != null) {
+        set(i, target, value, converter);
+      }
+    }
+  }
+
+  /**
+   * Returns the source bean type, or {@code null} if the source is a {@link Map}.
+   */
+  public Class<?> getSourceType() {
+    return sourceType;
+  }
+
+  /**
+   * Returns the target bean type.
+   */
+  public Class<?> getTargetType() {
+    return targetType;
+  }
+
+  private void set(int i, Object target, Object value, Converter converter) {
+    if (!wrappers[i].isInstance(value)) {
+      value = (converter != null ? converter.convert(value, types[i]) : convertNumber(value, wrappers[i]));
+      if (value == SKIP || (value == null && types[i].isPrimitive())) {
+        return;
+      }
+    }
+    targets[i].set(target, value);
+  }
+
+  private static Object convertNumber(Object value, Class<?> wrapper) {
+    if (!(value instanceof Number)) {
+      return SKIP;
+    }
+    Number number = (Number) value;
+    if (wrapper == Integer.class) {
+      return number.intValue();
+    } else if (wrapper == Long.class) {
+      return number.longValue();
+    } else if (wrapper == Double.class) {
+      return number.doubleValue();
+    } else if (wrapper == Float.class) {
+      return number.floatValue();
+    } else if (wrapper == Short.class) {
+      return number.shortValue();
+    } else if (wrapper == Byte.class) {
+      return number.byteValue();
+    }
+    return SKIP;
+  }
+
+  /**
+   * Non-static fields of the class by name. As in {@link ReflectUtil#findField(Class, String)} the most derived field of a name hides the fields of
+   * the superclasses, even if it is excluded itself. Final fields are excluded if {@code writable} is {@code true}.
+   */
+  private static Map<String, FieldAccessor> fieldsByName(Class<?> clazz, boolean writable) {
+    Map<String, FieldAccessor> fields = new LinkedHashMap<>();
+    Set<String> names = new HashSet<>();
+    for (Field field : ReflectUtil.getFields(clazz)) {
+      if (!names.add(field.getName())) {
+        continue;
+      }
+      int modifiers = field.getModifiers();
+      if (Modifier.isStatic(modifiers) || (writable && Modifier.isFinal(modifiers))) {
+        continue;
+      }
+      FieldAccessor accessor = ReflectUtil.accessor(field);
+      if (!writable || accessor.typedSetter() != null) {
+        fields.put(field.getName(), accessor);
+      }
+    }
+    return fields;
+  }
+}
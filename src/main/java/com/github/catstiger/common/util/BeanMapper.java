@@ -0,0 +1,158 @@
+package com.github.catstiger.common.util;
+
+import java.lang.reflect.Field;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.commons.lang3.ArrayUtils;
+
+/**
+ * Pre-compiled plan converting beans of a given class to {@link Map}. The fields to be converted and their {@link FieldAccessor accessors} are resolved
+ * once, converting a bean is then a straight loop over the accessors.
+ * <p>
+ * Instances are obtained from {@link ReflectUtil#mapper(Class, String...)}, which caches a bounded number of them per class and field selection,
+ * and are safe for concurrent use. Holding an instance avoids looking it up by the field names at every conversion.
+ *
+ * @param <T> the bean type
+ * @see ReflectUtil#toMap(Object, String...)
+ */
+public final class BeanMapper<T> {
+  private final Class<T> type;
+
+  private final String[] names;
+
+  private final FieldAccessor[] accessors;
+
+  /**
+   * Position of each name in {@link #names}, used by {@link #view(Object)}.
+   */
+  private final Map<String, Integer> index;
+
+  private final int capacity;
+
+  BeanMapper(Class<T> type, String[] fieldnames) {
+    Map<String, FieldAccessor> selected = new LinkedHashMap<>();
+    for (Field field : ReflectUtil.getFields(type)) {
+      if (fieldnames == null || ArrayUtils.contains(fieldnames, field.getName())) {
+        // Same as Map#put on the converted map, the last field of the same name wins.
+        selected.put(field.getName(), ReflectUtil.accessor(field));
+      }
+    }
+
+    this.type = type;
+    this.names = selected.keySet().toArray(new String[selected.size()]);
+    this.accessors = selected.values().toArray(new FieldAccessor[selected.size()]);
+    this.index = new HashMap<>(capacity(names.length));
+    for (int i = 0; i < names.length; i++) {
+      index.put(names[i], i);
+    }
+    this.capacity = capacity(names.length);
+  }
+
+  /**
+   * Converts the bean to a new {@link HashMap} which is sized to hold all the selected fields without rehashing.
+   *
+   * @param bean the bean to convert, must not be {@code null}
+   * @return a mutable map of field name to field value
+   */
+  public Map<String, Object> toMap(T bean) {
+    Map<String, Object> map = new HashMap<>(capacity);
+    for (int i = 0; i < accessors.length; i++) {
+      map.put(names[i], accessors[i].get(bean));
+    }
+    return map;
+  }
+
+  /**
+   * Returns a read-only {@link Map} view of the bean. Nothing is copied, the field values are read from the bean when they are requested, so the view
+   * reflects later changes of the bean.
+   *
+   * @param bean the bean to view, must not be {@code null}
+   * @return a read-only map of field name to field value
+   */
+  public Map<String, Object> view(T bean) {
+    if (bean == null) {
+      throw new RuntimeException("Bean must not be null");
+    }
+    return new BeanView(bean);
+  }
+
+  /**
+   * Returns the bean type of this mapper.
+   */
+  public Class<T> getType() {
+    return type;
+  }
+
+  /**
+   * Returns the number of the fields converted by this mapper.
+   */
+  public int size() {
+    return names.length;
+  }
+
+  private static int capacity(int size) {
+    return (int) (size / 0.75f) + 1;
+  }
+
+  private final class BeanView extends AbstractMap<String, Object> {
+    private final T bean;
+
+    BeanView(T bean) {
+      this.bean = bean;
+    }
+
+    @Override
+    public Object get(Object key) {
+      Integer i = index.get(key);
+      return i == null ? null : accessors[i].get(bean);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return index.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+      return names.length;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+      return new AbstractSet<Entry<String, Object>>() {
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+          return new Iterator<Entry<String, Object>>() {
+            private int cursor = 0;
+
+            @Override
+            public boolean hasNext() {
+              return cursor < names.length;
+            }
+
+            @Override
+            public Entry<String, Object> next() {
+              if (cursor >= names.length) {
+                throw new NoSuchElementException();
+              }
+              int i = cursor++;
+              return new SimpleImmutableEntry<>(names[i], accessors[i].get(bean));
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return names.length;
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,263 @@
+package com.github.catstiger.common.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread-safe pool of direct {@link ByteBuffer}s in power-of-two size classes. Direct buffers are expensive to allocate and are freed only by GC,
+ * pooling them keeps I/O buffers out of the heap without churning native memory. Requests larger than the largest class get a direct buffer that
+ * is not pooled.
+ * <p>
+ * A buffer is leased until the {@link Lease} is closed. A lease that becomes unreachable without being closed is counted as a leak and logged,
+ * with the stack trace of the acquisition when {@link #setLeakDetection(boolean)} is on.
+ *
+ * <pre>
+ * try (ByteBufferPool.Lease lease = ByteBufferPool.getDefault().acquire(64 * 1024)) {
+ *   ByteBuffer buffer = lease.buffer();
+ *   ...
+ * }
+ * </pre>
+ */
+public final class ByteBufferPool {
+  private static final Logger logger = LoggerFactory.getLogger(ByteBufferPool.class);
+
+  public static final int DEFAULT_MIN_SIZE = 4 * 1024;
+
+  public static final int DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+
+  private static final ByteBufferPool DEFAULT = new ByteBufferPool(DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE,
+      Runtime.getRuntime().availableProcessors() * 2);
+
+  private final int minShift;
+
+  private final int maxShift;
+
+  private final int maxIdle;
+
+  private final Queue<ByteBuffer>[] idle;
+
+  private final AtomicInteger[] idleCounts;
+
+  private final Set<LeakTracker> leased = ConcurrentHashMap.newKeySet();
+
+  private final ReferenceQueue<Lease> unreachable = new ReferenceQueue<>();
+
+  private final AtomicLong acquired = new AtomicLong();
+
+  private final AtomicLong allocated = new AtomicLong();
+
+  private final AtomicLong leaked = new AtomicLong();
+
+  private volatile boolean leakDetection;
+
+  /**
+   * @param minSize size of the smallest class, rounded up to a power of two
+   * @param maxSize size of the largest class, rounded up to a power of two
+   * @param maxIdle idle buffers kept per class, the others are dropped on release
+   */
+  @SuppressWarnings("unchecked")
+  public ByteBufferPool(int minSize, int maxSize, int maxIdle) {
+    if (minSize <= 0 || maxSize < minSize || maxSize > 1 << 30 || maxIdle < 0) {
+      throw new IllegalArgumentException("Invalid pool sizes: " + minSize + ", " + maxSize + ", " + maxIdle);
+    }
+    this.minShift = shift(minSize);
+    this.maxShift = shift(maxSize);
+    this.maxIdle = maxIdle;
+    int classes = maxShift - minShift + 1;
+    this.idle = (Queue<ByteBuffer>[]) new Queue<?>[classes];
+    this.idleCounts = new AtomicInteger[classes];
+    for (int i = 0; i < classes; i++) {
+      idle[i] = new ConcurrentLinkedQueue<>();
+      idleCounts[i] = new AtomicInteger();
+    }
+  }
+
+  /**
+   * The pool shared by the utilities of this package, classes from {@link #DEFAULT_MIN_SIZE} to {@link #DEFAULT_MAX_SIZE}.
+   */
+  public static ByteBufferPool getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Records the stack trace of every acquisition, so that leaks can be traced to their origin. Costly, for debugging.
+   */
+  public ByteBufferPool setLeakDetection(boolean leakDetection) {
+    this.leakDetection = leakDetection;
+    return this;
+  }
+
+  /**
+   * Leases a cleared direct buffer whose limit is the given size, its capacity may be larger.
+   */
+  public Lease acquire(int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("Invalid buffer size: " + size);
+    }
+    pollLeaks();
+    acquired.incrementAndGet();
+    int shift = Math.max(shift(size), minShift);
+    int index = shift - minShift;
+    ByteBuffer buffer = null;
+    if (shift <= maxShift) {
+      buffer = idle[index].poll();
+      if (buffer != null) {
+        idleCounts[index].decrementAndGet();
+      }
+    }
+    if (buffer == null) {
+      allocated.incrementAndGet();
+      buffer = ByteBuffer.allocateDirect(shift <= maxShift ? 1 << shift : size);
+    }
+    buffer.clear().limit(size);
+    return new Lease(buffer, shift <= maxShift ? index : -1);
+  }
+
+  /**
+   * Number of acquisitions.
+   */
+  public long getAcquireCount() {
+    return acquired.get();
+  }
+
+  /**
+   * Number of direct buffers allocated, the acquisitions not served from the pool.
+   */
+  public long getAllocateCount() {
+    return allocated.get();
+  }
+
+  /**
+   * Number of buffers currently leased.
+   */
+  public int getLeasedCount() {
+    pollLeaks();
+    return leased.size();
+  }
+
+  /**
+   * Number of idle buffers in the pool.
+   */
+  public int getIdleCount() {
+    int count = 0;
+    for (AtomicInteger idleCount : idleCounts) {
+      count += idleCount.get();
+    }
+    return count;
+  }
+
+  /**
+   * Native memory held by the idle buffers.
+   */
+  public long getIdleBytes() {
+    long bytes = 0L;
+    for (int i = 0; i < idleCounts.length; i++) {
+      bytes += (long) idleCounts[i].get() << (minShift + i);
+    }
+    return bytes;
+  }
+
+  /**
+   * Number of leases found unreachable without being closed.
+   */
+  public long getLeakCount() {
+    pollLeaks();
+    return leaked.get();
+  }
+
+  @Override
+  public String toString() {
+    return "ByteBufferPool[acquired=" + getAcquireCount() + ", allocated=" + getAllocateCount() + ", leased=" + getLeasedCount() + ", idle="
+        + getIdleCount() + ", idleBytes=" + getIdleBytes() + ", leaked=" + getLeakCount() + "]";
+  }
+
+  private void release(ByteBuffer buffer, int index) {
+    if (index < 0) {
+      return;
+    }
+    if (idleCounts[index].incrementAndGet() <= maxIdle) {
+      idle[index].offer(buffer);
+    } else {
+      idleCounts[index].decrementAndGet();
+    }
+  }
+
+  private void pollLeaks() {
+    LeakTracker tracker;
+    while ((tracker = (LeakTracker) unreachable.poll()) != null) {
+      if (leased.remove(tracker)) {
+        leaked.incrementAndGet();
+        if (tracker.origin != null) {
+          logger.warn("ByteBuffer of {} bytes was not released", tracker.capacity, tracker.origin);
+        } else {
+          logger.warn("ByteBuffer of {} bytes was not released, enable leak detection to find where it was acquired", tracker.capacity);
+        }
+      }
+    }
+  }
+
+  private static int shift(int size) {
+    return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+  }
+
+  /**
+   * A leased buffer, gives it back to the pool on close. The buffer must not be used after that. Not thread-safe.
+   */
+  public final class Lease implements AutoCloseable {
+    private ByteBuffer buffer;
+
+    private final int index;
+
+    private final LeakTracker tracker;
+
+    private Lease(ByteBuffer buffer, int index) {
+      this.buffer = buffer;
+      this.index = index;
+      this.tracker = new LeakTracker(this, buffer.capacity(), leakDetection ? new Throwable("Acquired here") : null);
+      leased.add(tracker);
+    }
+
+    public ByteBuffer buffer() {
+      if (buffer == null) {
+        throw new IllegalStateException("The buffer is released");
+      }
+      return buffer;
+    }
+
+    @Override
+    public void close() {
+      if (buffer == null) {
+        return;
+      }
+      leased.remove(tracker);
+      tracker.clear();
+      release(buffer, index);
+      buffer = null;
+    }
+  }
+
+  /**
+   * Tracks a lease without keeping it reachable, it is enqueued when the lease is collected.
+   */
+  private final class LeakTracker extends WeakReference<Lease> {
+    private final int capacity;
+
+    private final Throwable origin;
+
+    LeakTracker(Lease lease, int capacity, Throwable origin) {
+      super(lease, unreachable);
+      this.capacity = capacity;
+      this.origin = origin;
+    }
+  }
+}
@@ -5,7 +5,8 @@ import java.util.regex.Pattern;
 public class ByteUtil {
 
   /**
-   * Join two byte arrays to a new byte array.
+   * Join two byte arrays to a new byte array. To assemble many parts, use {@link #concat(byte[]...)} or {@link CompositeBytes}, which copy each part
+   * at most once.
    */
   public static byte[] concat(byte[] buf1, byte[] buf2) {
     byte[] buffer = new byte[buf1.length + buf2.length];
@@ -30,6 +31,23 @@ public class ByteUtil {
     return buffer;
   }
 
+  /**
+   * Join byte arrays to a new byte array, each array is copied once.
+   */
+  public static byte[] concat(byte[]... bufs) {
+    int length = 0;
+    for (byte[] buf : bufs) {
+      length += buf.length;
+    }
+    byte[] buffer = new byte[length];
+    int offset = 0;
+    for (byte[] buf : bufs) {
+      System.arraycopy(buf, 0, buffer, offset, buf.length);
+      offset += buf.length;
+    }
+    return buffer;
+  }
+
   /**
    * Convert bytes to hex string (all lower-case).
    *
@@ -37,14 +55,7 @@ public class ByteUtil {
    * @return Hex string.
    */
   public static String toHexString(byte[] b) {
-    StringBuilder sb = new StringBuilder(b.length * 2);
-    for (byte x : b) {
-      int hi = (x & 0xf0) >> 4;
-      int lo = x & 0x0f;
-      sb.append(HEX_CHARS[hi]);
-      sb.append(HEX_CHARS[lo]);
-    }
-    return sb.toString().trim();
+    return Hex.encodeToString(b);
   }
 
   /**
@@ -54,50 +65,27 @@ public class ByteUtil {
    * @return Hex string.
    */
   public static String toHex(byte b) {
-    int hi = (b & 0xf0) >> 4;
-    int lo = b & 0x0f;
-    char[] cs = { HEX_CHARS[hi], HEX_CHARS[lo] };
-    return new String(cs);
+    return Hex.encodeToString(b);
   }
 
+  /**
+   * Convert hex string of 2 characters (either case) to byte.
+   */
   public static byte fromHex(String s) {
     if (s.length() != 2) {
       throw new IllegalArgumentException("Invalid length of string.");
     }
-    char c1 = s.charAt(0);
-    char c2 = s.charAt(1);
-    int n1 = HEX_STRING.indexOf(c1);
-    int n2 = HEX_STRING.indexOf(c2);
-    if (n1 == (-1)) {
-      throw new IllegalArgumentException("Invalid char in string: " + c1);
-    }
-    if (n2 == (-1)) {
-      throw new IllegalArgumentException("Invalid char in string: " + c2);
-    }
-    int n = (n1 << 4) + n2;
-    return (byte) n;
+    return Hex.decode(s)[0];
   }
 
+  /**
+   * Convert hex string (either case) to bytes.
+   */
   public static byte[] fromHexString(String s) {
     if (s.length() % 2 == 1) {
       throw new IllegalArgumentException("Invalid length of string.");
     }
-    byte[] data = new byte[s.length() / 2];
-    for (int i = 0; i < data.length; i++) {
-      char c1 = s.charAt(i * 2);
-      char c2 = s.charAt(i * 2 + 1);
-      int n1 = HEX_STRING.indexOf(c1);
-      int n2 = HEX_STRING.indexOf(c2);
-      if (n1 == (-1)) {
-        throw new IllegalArgumentException("Invalid char in string: " + c1);
-      }
-      if (n2 == (-1)) {
-        throw new IllegalArgumentException("Invalid char in string: " + c2);
-      }
-      int n = (n1 << 4) + n2;
-      data[i] = (byte) n;
-    }
-    return data;
+    return Hex.decode(s);
   }
 
   public static boolean isSha1(String s) {
@@ -108,9 +96,6 @@ public class ByteUtil {
     return PATTERN_SHA256.matcher(s).matches();
   }
 
-  private static final String HEX_STRING = "0123456789abcdef";
-  private static final char[] HEX_CHARS = HEX_STRING.toCharArray();
-
   private static final Pattern PATTERN_SHA1 = Pattern.compile("^[a-f0-9]{40}$");
   private static final Pattern PATTERN_SHA256 = Pattern.compile("^[a-f0-9]{64}$");
 
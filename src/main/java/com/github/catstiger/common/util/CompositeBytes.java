@@ -0,0 +1,284 @@
+package com.github.catstiger.common.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Byte sequence composed of byte arrays and buffers without copying them, to replace chains of {@link ByteUtil#concat(byte[], byte[])}. The content
+ * is exported as a {@code ByteBuffer[]} for gathering writes, read by an {@link InputStream}, or flattened to one array when needed; the flattened
+ * array is kept until the next append.
+ * <p>
+ * The components are shared, not copied: they must not be modified while the sequence is in use. Not thread-safe.
+ *
+ * <pre>
+ * CompositeBytes frame = new CompositeBytes().append(header).append(body).append(checksum);
+ * frame.writeTo(fileChannel);
+ * </pre>
+ */
+public final class CompositeBytes {
+  private ByteBuffer[] components = new ByteBuffer[8];
+
+  /**
+   * Offset of each component in the sequence.
+   */
+  private int[] offsets = new int[8];
+
+  private int count;
+
+  private int length;
+
+  private byte[] flattened;
+
+  /**
+   * Appends the array, the array is not copied.
+   */
+  public CompositeBytes append(byte[] bytes) {
+    return append(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Appends {@code len} bytes of the array from {@code offset}, the array is not copied.
+   */
+  public CompositeBytes append(byte[] bytes, int offset, int len) {
+    return add(ByteBuffer.wrap(bytes, offset, len).slice());
+  }
+
+  /**
+   * Appends the remaining bytes of the buffer, the buffer is not copied and its position is not changed.
+   */
+  public CompositeBytes append(ByteBuffer buffer) {
+    return add(buffer.slice());
+  }
+
+  /**
+   * Appends the content of the other sequence, the components are shared.
+   */
+  public CompositeBytes append(CompositeBytes other) {
+    for (int i = 0, n = other.count; i < n; i++) {
+      add(other.components[i].duplicate());
+    }
+    return this;
+  }
+
+  /**
+   * Returns the number of bytes.
+   */
+  public int length() {
+    return length;
+  }
+
+  /**
+   * Returns the number of components.
+   */
+  public int componentCount() {
+    return count;
+  }
+
+  /**
+   * Returns the byte at the index.
+   */
+  public byte byteAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length);
+    }
+    if (flattened != null) {
+      return flattened[index];
+    }
+    int i = component(index);
+    return components[i].get(index - offsets[i]);
+  }
+
+  /**
+   * Returns read-only views of the components, for {@link GatheringByteChannel#write(ByteBuffer[])}. The views are independent of each other and of
+   * this sequence.
+   */
+  public ByteBuffer[] toByteBuffers() {
+    ByteBuffer[] buffers = new ByteBuffer[count];
+    for (int i = 0; i < count; i++) {
+      buffers[i] = components[i].asReadOnlyBuffer();
+    }
+    return buffers;
+  }
+
+  /**
+   * Returns the content as one array. The array is built at the first call and returned again until the next append, it must not be modified.
+   */
+  public byte[] toByteArray() {
+    if (flattened == null) {
+      byte[] bytes = new byte[length];
+      for (int i = 0; i < count; i++) {
+        components[i].duplicate().get(bytes, offsets[i], components[i].remaining());
+      }
+      flattened = bytes;
+    }
+    return flattened;
+  }
+
+  /**
+   * Writes the content by gathering writes, until all bytes are written.
+   *
+   * @return number of bytes written
+   */
+  public long writeTo(GatheringByteChannel channel) {
+    ByteBuffer[] buffers = toByteBuffers();
+    long written = 0;
+    int first = 0;
+    try {
+      while (written < length) {
+        written += channel.write(buffers, first, buffers.length - first);
+        while (first < buffers.length && !buffers[first].hasRemaining()) {
+          first++;
+        }
+      }
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+    return written;
+  }
+
+  /**
+   * Writes the content to the stream, the stream is neither flushed nor closed.
+   */
+  public void writeTo(OutputStream out) {
+    try {
+      for (int i = 0; i < count; i++) {
+        ByteBuffer component = components[i];
+        if (component.hasArray()) {
+          out.write(component.array(), component.arrayOffset() + component.position(), component.remaining());
+        } else {
+          byte[] buffer = new byte[Math.min(component.remaining(), Hasher.BUFFER_SIZE)];
+          ByteBuffer src = component.duplicate();
+          while (src.hasRemaining()) {
+            int n = Math.min(buffer.length, src.remaining());
+            src.get(buffer, 0, n);
+            out.write(buffer, 0, n);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  /**
+   * Feeds the content to the digest, component by component.
+   */
+  public void update(MessageDigest md) {
+    for (int i = 0; i < count; i++) {
+      md.update(components[i].duplicate());
+    }
+  }
+
+  /**
+   * Returns a stream reading the content, the stream does not copy the components.
+   */
+  public InputStream newInputStream() {
+    return new Reader();
+  }
+
+  @Override
+  public String toString() {
+    return "CompositeBytes[length=" + length + ", components=" + count + "]";
+  }
+
+  private CompositeBytes add(ByteBuffer component) {
+    int len = component.remaining();
+    if (len == 0) {
+      return this;
+    }
+    if (length + len < 0) {
+      throw new IllegalStateException("Composite bytes exceed 2 GB");
+    }
+    if (count == components.length) {
+      components = Arrays.copyOf(components, count * 2);
+      offsets = Arrays.copyOf(offsets, count * 2);
+    }
+    components[count] = component;
+    offsets[count] = length;
+    count++;
+    length += len;
+    flattened = null;
+    return this;
+  }
+
+  /**
+   * Index of the component containing the byte at the index.
+   */
+  private int component(int index) {
+    int i = Arrays.binarySearch(offsets, 0, count, index);
+    return i >= 0 ? i : -i - 2;
+  }
+
+  private class Reader extends InputStream {
+    private int index;
+
+    private int position;
+
+    private int mark;
+
+    @Override
+    public int read() {
+      if (position >= length) {
+        return -1;
+      }
+      return byteAt(position++) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (position >= length) {
+        return -1;
+      }
+      int n = 0;
+      while (n < len && position < length) {
+        while (position >= offsets[index] + components[index].remaining()) {
+          index++;
+        }
+        ByteBuffer src = components[index].duplicate();
+        src.position(src.position() + position - offsets[index]);
+        int k = Math.min(len - n, src.remaining());
+        src.get(b, off + n, k);
+        n += k;
+        position += k;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) {
+      int k = (int) Math.max(0, Math.min(n, length - position));
+      position += k;
+      index = position < length ? component(position) : index;
+      return k;
+    }
+
+    @Override
+    public int available() {
+      return length - position;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return true;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+      mark = position;
+    }
+
+    @Override
+    public synchronized void reset() {
+      position = mark;
+      index = position < length ? component(position) : 0;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package com.github.catstiger.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Consistent hash ring of nodes, built on {@link FastHash#xxHash64(byte[])}. Each node is placed on the ring by a number of virtual nodes, a key is
+ * mapped to the first virtual node at or after its hash. Adding or removing a node only moves the keys of that node.
+ * <p>
+ * The ring is immutable and thread-safe, {@link #add(Object)} and {@link #remove(Object)} return a new ring. The position of a node depends only on
+ * its {@code toString()}, so rings built on different machines agree.
+ *
+ * <pre>
+ * ConsistentHash&lt;String&gt; ring = new ConsistentHash&lt;&gt;(Arrays.asList("cache-1", "cache-2", "cache-3"));
+ * String node = ring.get(cacheKey);
+ * </pre>
+ *
+ * @param <T> type of the nodes
+ */
+public final class ConsistentHash<T> {
+  /**
+   * Default number of virtual nodes of each node.
+   */
+  public static final int DEFAULT_REPLICAS = 160;
+
+  private final List<T> nodes;
+
+  private final int replicas;
+
+  /**
+   * Positions of the virtual nodes on the ring, sorted.
+   */
+  private final long[] ring;
+
+  /**
+   * Index in {@link #nodes} of the virtual node at the same position of {@link #ring}.
+   */
+  private final int[] owners;
+
+  public ConsistentHash(Collection<? extends T> nodes) {
+    this(nodes, DEFAULT_REPLICAS);
+  }
+
+  /**
+   * @param nodes the nodes, must not contain {@code null}
+   * @param replicas number of virtual nodes of each node
+   */
+  public ConsistentHash(Collection<? extends T> nodes, int replicas) {
+    if (nodes == null || nodes.isEmpty()) {
+      throw new IllegalArgumentException("Nodes must not be empty");
+    }
+    if (replicas <= 0) {
+      throw new IllegalArgumentException("Number of replicas must be positive: " + replicas);
+    }
+    this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+    this.replicas = replicas;
+
+    int size = this.nodes.size() * replicas;
+    long[] positions = new long[size];
+    Integer[] order = new Integer[size];
+    for (int i = 0; i < this.nodes.size(); i++) {
+      T node = this.nodes.get(i);
+      if (node == null) {
+        throw new RuntimeException("Node must not be null");
+      }
+      byte[] name = node.toString().getBytes(StandardCharsets.UTF_8);
+      for (int r = 0; r < replicas; r++) {
+        int v = i * replicas + r;
+        positions[v] = FastHash.xxHash64(name, 0, name.length, r);
+        order[v] = v;
+      }
+    }
+    // ties are broken by node order, so that the ring does not depend on the order of the sort
+    Arrays.sort(order, (a, b) -> {
+      int c = Long.compareUnsigned(positions[a], positions[b]);
+      return c != 0 ? c : Integer.compare(a, b);
+    });
+    this.ring = new long[size];
+    this.owners = new int[size];
+    for (int i = 0; i < size; i++) {
+      ring[i] = positions[order[i]];
+      owners[i] = order[i] / replicas;
+    }
+  }
+
+  /**
+   * Returns the node of the key hash, e.g. computed by {@link FastHash}.
+   */
+  public T get(long hash) {
+    // binary search of the first position >= hash, in unsigned order
+    int low = 0;
+    int high = ring.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (Long.compareUnsigned(ring[mid], hash) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return nodes.get(owners[low == ring.length ? 0 : low]);
+  }
+
+  /**
+   * Returns the node of the key, the key is hashed by {@link FastHash#xxHash64(CharSequence)}.
+   */
+  public T get(CharSequence key) {
+    return get(FastHash.xxHash64(key));
+  }
+
+  /**
+   * Returns the node of the key, the key is hashed by {@link FastHash#xxHash64(byte[])}.
+   */
+  public T get(byte[] key) {
+    return get(FastHash.xxHash64(key));
+  }
+
+  /**
+   * Returns a new ring with the node added.
+   */
+  public ConsistentHash<T> add(T node) {
+    List<T> list = new ArrayList<>(nodes);
+    list.add(node);
+    return new ConsistentHash<>(list, replicas);
+  }
+
+  /**
+   * Returns a new ring with the node removed.
+   */
+  public ConsistentHash<T> remove(T node) {
+    List<T> list = new ArrayList<>(nodes);
+    list.remove(node);
+    return new ConsistentHash<>(list, replicas);
+  }
+
+  public List<T> getNodes() {
+    return nodes;
+  }
+
+  public int getReplicas() {
+    return replicas;
+  }
+}
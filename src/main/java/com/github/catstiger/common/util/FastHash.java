@@ -0,0 +1,402 @@
+package com.github.catstiger.common.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fast non-cryptographic hashes for cache keys, deduplication and sharding, where {@link HashUtil} is unnecessarily expensive. The hashes are
+ * computed without allocation and must never be used where collisions can be forced by an attacker.
+ * <ul>
+ * <li>xxHash64: over {@code byte[]}, {@link ByteBuffer}, {@link CharSequence} and {@code long}.</li>
+ * <li>MurmurHash3 x64 128-bit: over {@code byte[]} and {@link ByteBuffer}, the result is written into a caller-supplied {@code long[2]}.</li>
+ * </ul>
+ * Both produce the same values as the reference implementations, {@link CharSequence} is hashed as its UTF-16LE bytes, so that no encoding is
+ * needed.
+ *
+ * @see ConsistentHash
+ */
+public final class FastHash {
+  private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+
+  private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+
+  private static final long PRIME64_3 = 0x165667B19E3779F9L;
+
+  private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+
+  private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+  private static final long C1 = 0x87c37b91114253d5L;
+
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  private FastHash() {
+  }
+
+  public static long xxHash64(byte[] input) {
+    return xxHash64(input, 0, input.length, 0);
+  }
+
+  /**
+   * xxHash64 of the bytes of the array.
+   *
+   * @param input the array
+   * @param offset offset of the first byte
+   * @param len number of bytes
+   * @param seed the seed
+   * @return the hash
+   */
+  public static long xxHash64(byte[] input, int offset, int len, long seed) {
+    if (offset < 0 || len < 0 || offset > input.length - len) {
+      throw new IndexOutOfBoundsException("offset " + offset + ", length " + len + ", array length " + input.length);
+    }
+    int p = offset;
+    int end = offset + len;
+    long h;
+    if (len >= 32) {
+      long v1 = seed + PRIME64_1 + PRIME64_2;
+      long v2 = seed + PRIME64_2;
+      long v3 = seed;
+      long v4 = seed - PRIME64_1;
+      int limit = end - 32;
+      do {
+        v1 = round(v1, getLong(input, p));
+        v2 = round(v2, getLong(input, p + 8));
+        v3 = round(v3, getLong(input, p + 16));
+        v4 = round(v4, getLong(input, p + 24));
+        p += 32;
+      } while (p <= limit);
+      h = merge(v1, v2, v3, v4);
+    } else {
+      h = seed + PRIME64_5;
+    }
+    h += len;
+    while (p + 8 <= end) {
+      h = tail8(h, getLong(input, p));
+      p += 8;
+    }
+    if (p + 4 <= end) {
+      h = tail4(h, getInt(input, p));
+      p += 4;
+    }
+    while (p < end) {
+      h = tail1(h, input[p] & 0xff);
+      p++;
+    }
+    return avalanche(h);
+  }
+
+  public static long xxHash64(ByteBuffer input) {
+    return xxHash64(input, 0);
+  }
+
+  /**
+   * xxHash64 of the remaining bytes of the buffer, which may be direct. The position of the buffer is not changed.
+   *
+   * @param input the buffer
+   * @param seed the seed
+   * @return the hash
+   */
+  public static long xxHash64(ByteBuffer input, long seed) {
+    if (input.hasArray()) {
+      return xxHash64(input.array(), input.arrayOffset() + input.position(), input.remaining(), seed);
+    }
+    boolean swap = input.order() != ByteOrder.LITTLE_ENDIAN;
+    int p = input.position();
+    int end = input.limit();
+    int len = end - p;
+    long h;
+    if (len >= 32) {
+      long v1 = seed + PRIME64_1 + PRIME64_2;
+      long v2 = seed + PRIME64_2;
+      long v3 = seed;
+      long v4 = seed - PRIME64_1;
+      int limit = end - 32;
+      do {
+        v1 = round(v1, getLong(input, p, swap));
+        v2 = round(v2, getLong(input, p + 8, swap));
+        v3 = round(v3, getLong(input, p + 16, swap));
+        v4 = round(v4, getLong(input, p + 24, swap));
+        p += 32;
+      } while (p <= limit);
+      h = merge(v1, v2, v3, v4);
+    } else {
+      h = seed + PRIME64_5;
+    }
+    h += len;
+    while (p + 8 <= end) {
+      h = tail8(h, getLong(input, p, swap));
+      p += 8;
+    }
+    if (p + 4 <= end) {
+      int i = input.getInt(p);
+      h = tail4(h, (swap ? Integer.reverseBytes(i) : i) & 0xffffffffL);
+      p += 4;
+    }
+    while (p < end) {
+      h = tail1(h, input.get(p) & 0xff);
+      p++;
+    }
+    return avalanche(h);
+  }
+
+  public static long xxHash64(CharSequence input) {
+    return xxHash64(input, 0);
+  }
+
+  /**
+   * xxHash64 of the UTF-16LE bytes of the characters, the characters are not encoded into a temporary array. The hash of a string therefore differs
+   * from the hash of its UTF-8 bytes.
+   *
+   * @param input the characters
+   * @param seed the seed
+   * @return the hash
+   */
+  public static long xxHash64(CharSequence input, long seed) {
+    int chars = input.length();
+    int p = 0;
+    long h;
+    if (chars >= 16) {
+      long v1 = seed + PRIME64_1 + PRIME64_2;
+      long v2 = seed + PRIME64_2;
+      long v3 = seed;
+      long v4 = seed - PRIME64_1;
+      int limit = chars - 16;
+      do {
+        v1 = round(v1, getLong(input, p));
+        v2 = round(v2, getLong(input, p + 4));
+        v3 = round(v3, getLong(input, p + 8));
+        v4 = round(v4, getLong(input, p + 12));
+        p += 16;
+      } while (p <= limit);
+      h = merge(v1, v2, v3, v4);
+    } else {
+      h = seed + PRIME64_5;
+    }
+    h += 2L * chars;
+    while (p + 4 <= chars) {
+      h = tail8(h, getLong(input, p));
+      p += 4;
+    }
+    if (p + 2 <= chars) {
+      h = tail4(h, (input.charAt(p) | (long) input.charAt(p + 1) << 16));
+      p += 2;
+    }
+    if (p < chars) {
+      char c = input.charAt(p);
+      h = tail1(h, c & 0xff);
+      h = tail1(h, c >>> 8);
+    }
+    return avalanche(h);
+  }
+
+  /**
+   * xxHash64 of the 8 little-endian bytes of the value.
+   *
+   * @param input the value
+   * @param seed the seed
+   * @return the hash
+   */
+  public static long xxHash64(long input, long seed) {
+    return avalanche(tail8(seed + PRIME64_5 + 8, input));
+  }
+
+  public static long xxHash64(long input) {
+    return xxHash64(input, 0);
+  }
+
+  /**
+   * MurmurHash3 x64 128-bit of the bytes of the array.
+   *
+   * @param input the array
+   * @param offset offset of the first byte
+   * @param len number of bytes
+   * @param seed the seed, only the low 32 bits are used as by the reference implementation
+   * @param out receives the hash, {@code out[0]} is the first 8 bytes of the reference output read in little-endian, {@code out[1]} the last 8
+   */
+  public static void murmur3x128(byte[] input, int offset, int len, int seed, long[] out) {
+    if (offset < 0 || len < 0 || offset > input.length - len) {
+      throw new IndexOutOfBoundsException("offset " + offset + ", length " + len + ", array length " + input.length);
+    }
+    long h1 = seed & 0xffffffffL;
+    long h2 = h1;
+    int p = offset;
+    int end = offset + len;
+    for (; p + 16 <= end; p += 16) {
+      h1 ^= mixK1(getLong(input, p));
+      h1 = (Long.rotateLeft(h1, 27) + h2) * 5 + 0x52dce729;
+      h2 ^= mixK2(getLong(input, p + 8));
+      h2 = (Long.rotateLeft(h2, 31) + h1) * 5 + 0x38495ab5;
+    }
+    long k1 = 0;
+    long k2 = 0;
+    int rest = end - p;
+    for (int i = rest - 1; i >= 8; i--) {
+      k2 = (k2 << 8) | (input[p + i] & 0xff);
+    }
+    for (int i = Math.min(rest, 8) - 1; i >= 0; i--) {
+      k1 = (k1 << 8) | (input[p + i] & 0xff);
+    }
+    finish(h1 ^ mixK1(k1), h2 ^ mixK2(k2), len, out);
+  }
+
+  /**
+   * MurmurHash3 x64 128-bit of the bytes of the array, with seed 0.
+   *
+   * @see #murmur3x128(byte[], int, int, int, long[])
+   */
+  public static void murmur3x128(byte[] input, long[] out) {
+    murmur3x128(input, 0, input.length, 0, out);
+  }
+
+  /**
+   * MurmurHash3 x64 128-bit of the remaining bytes of the buffer, which may be direct. The position of the buffer is not changed.
+   *
+   * @see #murmur3x128(byte[], int, int, int, long[])
+   */
+  public static void murmur3x128(ByteBuffer input, int seed, long[] out) {
+    if (input.hasArray()) {
+      murmur3x128(input.array(), input.arrayOffset() + input.position(), input.remaining(), seed, out);
+      return;
+    }
+    boolean swap = input.order() != ByteOrder.LITTLE_ENDIAN;
+    long h1 = seed & 0xffffffffL;
+    long h2 = h1;
+    int p = input.position();
+    int end = input.limit();
+    for (; p + 16 <= end; p += 16) {
+      h1 ^= mixK1(getLong(input, p, swap));
+      h1 = (Long.rotateLeft(h1, 27) + h2) * 5 + 0x52dce729;
+      h2 ^= mixK2(getLong(input, p + 8, swap));
+      h2 = (Long.rotateLeft(h2, 31) + h1) * 5 + 0x38495ab5;
+    }
+    long k1 = 0;
+    long k2 = 0;
+    int rest = end - p;
+    for (int i = rest - 1; i >= 8; i--) {
+      k2 = (k2 << 8) | (input.get(p + i) & 0xff);
+    }
+    for (int i = Math.min(rest, 8) - 1; i >= 0; i--) {
+      k1 = (k1 << 8) | (input.get(p + i) & 0xff);
+    }
+    finish(h1 ^ mixK1(k1), h2 ^ mixK2(k2), end - input.position(), out);
+  }
+
+  /**
+   * Jump consistent hash (Lamping and Veach): maps the key to a bucket so that only {@code 1/buckets} of the keys move when a bucket is added.
+   * Buckets can only be added or removed at the end, see {@link ConsistentHash} for named nodes.
+   *
+   * @param key the key, e.g. a hash of this class
+   * @param buckets number of buckets
+   * @return the bucket, from 0 to {@code buckets - 1}
+   */
+  public static int jumpConsistentHash(long key, int buckets) {
+    if (buckets <= 0) {
+      throw new IllegalArgumentException("Number of buckets must be positive: " + buckets);
+    }
+    long b = -1;
+    long j = 0;
+    while (j < buckets) {
+      b = j;
+      key = key * 2862933555777941757L + 1;
+      j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+    }
+    return (int) b;
+  }
+
+  private static long round(long acc, long input) {
+    acc += input * PRIME64_2;
+    acc = Long.rotateLeft(acc, 31);
+    return acc * PRIME64_1;
+  }
+
+  private static long mergeRound(long acc, long val) {
+    acc ^= round(0, val);
+    return acc * PRIME64_1 + PRIME64_4;
+  }
+
+  private static long merge(long v1, long v2, long v3, long v4) {
+    long h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+    h = mergeRound(h, v1);
+    h = mergeRound(h, v2);
+    h = mergeRound(h, v3);
+    return mergeRound(h, v4);
+  }
+
+  private static long tail8(long h, long k) {
+    h ^= round(0, k);
+    return Long.rotateLeft(h, 27) * PRIME64_1 + PRIME64_4;
+  }
+
+  private static long tail4(long h, long k) {
+    h ^= k * PRIME64_1;
+    return Long.rotateLeft(h, 23) * PRIME64_2 + PRIME64_3;
+  }
+
+  private static long tail1(long h, int k) {
+    h ^= k * PRIME64_5;
+    return Long.rotateLeft(h, 11) * PRIME64_1;
+  }
+
+  private static long avalanche(long h) {
+    h ^= h >>> 33;
+    h *= PRIME64_2;
+    h ^= h >>> 29;
+    h *= PRIME64_3;
+    return h ^ (h >>> 32);
+  }
+
+  private static long mixK1(long k1) {
+    k1 *= C1;
+    k1 = Long.rotateLeft(k1, 31);
+    return k1 * C2;
+  }
+
+  private static long mixK2(long k2) {
+    k2 *= C2;
+    k2 = Long.rotateLeft(k2, 33);
+    return k2 * C1;
+  }
+
+  private static void finish(long h1, long h2, int len, long[] out) {
+    h1 ^= len;
+    h2 ^= len;
+    h1 += h2;
+    h2 += h1;
+    h1 = fmix64(h1);
+    h2 = fmix64(h2);
+    h1 += h2;
+    h2 += h1;
+    out[0] = h1;
+    out[1] = h2;
+  }
+
+  private static long fmix64(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    return k ^ (k >>> 33);
+  }
+
+  private static long getLong(byte[] b, int i) {
+    return (b[i] & 0xffL) | (b[i + 1] & 0xffL) << 8 | (b[i + 2] & 0xffL) << 16 | (b[i + 3] & 0xffL) << 24 | (b[i + 4] & 0xffL) << 32
+        | (b[i + 5] & 0xffL) << 40 | (b[i + 6] & 0xffL) << 48 | (b[i + 7] & 0xffL) << 56;
+  }
+
+  private static long getInt(byte[] b, int i) {
+    return (b[i] & 0xffL) | (b[i + 1] & 0xffL) << 8 | (b[i + 2] & 0xffL) << 16 | (b[i + 3] & 0xffL) << 24;
+  }
+
+  private static long getLong(ByteBuffer b, int i, boolean swap) {
+    long v = b.getLong(i);
+    return swap ? Long.reverseBytes(v) : v;
+  }
+
+  /**
+   * Little-endian long of 4 characters.
+   */
+  private static long getLong(CharSequence s, int i) {
+    return s.charAt(i) | (long) s.charAt(i + 1) << 16 | (long) s.charAt(i + 2) << 32 | (long) s.charAt(i + 3) << 48;
+  }
+}
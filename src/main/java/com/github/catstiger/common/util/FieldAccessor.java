@@ -0,0 +1,160 @@
+package com.github.catstiger.common.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Reusable accessor of a {@link Field}. The getter and setter are resolved once as {@link MethodHandle}s, so that reading or writing the field does not
+ * go through {@link Field#get(Object)}/{@link Field#set(Object, Object)} and the access check on every call.
+ * <p>
+ * Errors are reported as by {@link Field}: a target of the wrong type, a value of the wrong type or {@code null} for a primitive field throw
+ * {@link IllegalArgumentException}, a {@code null} target of an instance field throws {@link NullPointerException}.
+ * <p>
+ * Instances are cached by {@link ReflectUtil#accessor(Field)}, do not create them directly.
+ *
+ * @see ReflectUtil#getField(Field, Object)
+ * @see ReflectUtil#setField(Field, Object, Object)
+ */
+public final class FieldAccessor {
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+  private final Field field;
+
+  /**
+   * (Object)T where T is the exact field type, used to build specialized handles which do not box primitive values.
+   */
+  private final MethodHandle typedGetter;
+
+  /**
+   * (Object, T)void where T is the exact field type, {@code null} if the field can not be written through a handle.
+   */
+  private final MethodHandle typedSetter;
+
+  /**
+   * (Object)Object
+   */
+  private final MethodHandle getter;
+
+  /**
+   * (Object, Object)void, {@code null} if the field can not be written through a handle (static final fields, for example).
+   */
+  private final MethodHandle setter;
+
+  FieldAccessor(Field field) {
+    ReflectUtil.makeAccessible(field);
+    this.field = field;
+    boolean isStatic = Modifier.isStatic(field.getModifiers());
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    try {
+      MethodHandle mh = lookup.unreflectGetter(field);
+      if (isStatic) {
+        mh = MethodHandles.dropArguments(mh, 0, Object.class);
+      }
+      this.typedGetter = mh.asType(MethodType.methodType(field.getType(), Object.class));
+      this.getter = mh.asType(GETTER_TYPE);
+    } catch (IllegalAccessException ex) {
+      throw new IllegalStateException("Unexpected reflection exception - " + ex.getClass().getName() + ": " + ex.getMessage());
+    }
+
+    MethodHandle typedWriter = null;
+    MethodHandle writer = null;
+    try {
+      MethodHandle mh = lookup.unreflectSetter(field);
+      if (isStatic) {
+        mh = MethodHandles.dropArguments(mh, 0, Object.class);
+      }
+      typedWriter = mh.asType(MethodType.methodType(void.class, Object.class, field.getType()));
+      writer = mh.asType(SETTER_TYPE);
+    } catch (IllegalAccessException ex) {
+      // final field, falls back to Field#set
+    }
+    this.typedSetter = typedWriter;
+    this.setter = writer;
+  }
+
+  /**
+   * Returns the value of the field on the given target, primitive values are wrapped.
+   *
+   * @param target the target object, may be {@code null} for static fields
+   * @return the field's current value
+   */
+  public Object get(Object target) {
+    try {
+      return (Object) getter.invokeExact(target);
+    } catch (ClassCastException ex) {
+      throw new IllegalArgumentException("Can not get " + describe() + " on " + target.getClass().getName(), ex);
+    } catch (Throwable ex) {
+      throw rethrow(ex);
+    }
+  }
+
+  /**
+   * Sets the value of the field on the given target, the value is unwrapped if the underlying field has a primitive type.
+   *
+   * @param target the target object, may be {@code null} for static fields
+   * @param value the value to set (may be {@code null})
+   */
+  public void set(Object target, Object value) {
+    if (setter == null) {
+      try {
+        field.set(target, value);
+      } catch (IllegalAccessException ex) {
+        throw new IllegalStateException("Unexpected reflection exception - " + ex.getClass().getName() + ": " + ex.getMessage());
+      }
+      return;
+    }
+    try {
+      setter.invokeExact(target, value);
+    } catch (ClassCastException ex) {
+      if (target != null && !field.getDeclaringClass().isInstance(target)) {
+        throw new IllegalArgumentException("Can not set " + describe() + " on " + target.getClass().getName(), ex);
+      }
+      throw new IllegalArgumentException("Can not set " + describe() + " to " + value.getClass().getName(), ex);
+    } catch (NullPointerException ex) {
+      if (value == null && field.getType().isPrimitive() && (target != null || Modifier.isStatic(field.getModifiers()))) {
+        throw new IllegalArgumentException("Can not set " + describe() + " to null value", ex);
+      }
+      throw ex;
+    } catch (Throwable ex) {
+      throw rethrow(ex);
+    }
+  }
+
+  private String describe() {
+    return field.getType().getName() + " field " + field.getDeclaringClass().getName() + "." + field.getName();
+  }
+
+  /**
+   * Returns the underlying field.
+   */
+  public Field getField() {
+    return field;
+  }
+
+  /**
+   * Returns the getter handle typed as (Object)T, where T is the exact field type.
+   */
+  MethodHandle typedGetter() {
+    return typedGetter;
+  }
+
+  /**
+   * Returns the setter handle typed as (Object, T)void, where T is the exact field type, or {@code null} if the field is not writable.
+   */
+  MethodHandle typedSetter() {
+    return typedSetter;
+  }
+
+  static RuntimeException rethrow(Throwable ex) {
+    if (ex instanceof Error) {
+      throw (Error) ex;
+    }
+    return Exceptions.unchecked(ex);
+  }
+}
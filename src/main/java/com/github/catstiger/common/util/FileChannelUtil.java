@@ -9,6 +9,9 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,8 +19,56 @@ import org.slf4j.LoggerFactory;
 public class FileChannelUtil {
   private static Logger logger = LoggerFactory.getLogger(FileChannelUtil.class);
 
+  /**
+   * 与InputStream, OutputStream交换数据时每次读写的字节数
+   * @deprecated 不再使用, 每次读写的字节数与文件读写缓冲区相同, 由{@link #setBufferSize(int)}设置
+   */
+  @Deprecated
   public static final int BUFFER_SIZE = 10240;
 
+  /**
+   * 默认的文件读写缓冲区大小
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+  /**
+   * 每次调用transferTo/transferFrom传输的最大字节数, 单次调用在多数系统上不能超过2G
+   */
+  static final long TRANSFER_CHUNK = 1L << 30;
+
+  /**
+   * 每个线程缓存的与InputStream, OutputStream交换数据的数组的大小上限, 更大的数组用后即弃
+   */
+  static final int MAX_CACHED_ARRAY_SIZE = ByteBufferPool.DEFAULT_MAX_SIZE;
+
+  private static final ThreadLocal<byte[]> arrays = new ThreadLocal<>();
+
+  private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+  private ByteBufferPool pool = ByteBufferPool.getDefault();
+
+  /**
+   * 设置文件读写缓冲区的大小, 默认为{@link #DEFAULT_BUFFER_SIZE}
+   */
+  public FileChannelUtil setBufferSize(int bufferSize) {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+    }
+    this.bufferSize = bufferSize;
+    return this;
+  }
+
+  /**
+   * 设置文件读写缓冲区的来源, 默认为{@link ByteBufferPool#getDefault()}
+   */
+  public FileChannelUtil setPool(ByteBufferPool pool) {
+    if (pool == null) {
+      throw new RuntimeException("Pool must not be null");
+    }
+    this.pool = pool;
+    return this;
+  }
+
   /**
    * 写文件
    * @param dest 要写入的文件
@@ -25,6 +76,17 @@ public class FileChannelUtil {
    * @return
    */
   public int write(File dest, InputStream in) {
+    return write(dest, in, null);
+  }
+
+  /**
+   * 写文件, 同时计算写入内容的Hash
+   * @param dest 要写入的文件
+   * @param in 要写入的内容
+   * @param hasher 写入的内容同时输入到hasher, 可以为{@code null}
+   * @return
+   */
+  public int write(File dest, InputStream in, Hasher hasher) {
     int byteCount = 0;
     FileOutputStream out = null;
     FileChannel channel = null;
@@ -36,13 +98,31 @@ public class FileChannelUtil {
     }
     try {
       channel = out.getChannel();
+      if (hasher == null && in instanceof FileInputStream) {
+        return (int) transferFrom(((FileInputStream) in).getChannel(), channel, 0L, Long.MAX_VALUE);
+      }
 
-      byte[] buffer = new byte[BUFFER_SIZE];
-      int bytesRead = -1;
-      while ((bytesRead = in.read(buffer)) != -1) {
-        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, bytesRead);
-        channel.write(byteBuffer);
-        byteCount += bytesRead;
+      // the content is gathered in a direct buffer, writing a heap buffer would copy it to a temporary direct buffer of the same size
+      try (ByteBufferPool.Lease lease = pool.acquire(bufferSize)) {
+        ByteBuffer byteBuffer = lease.buffer();
+        int size = byteBuffer.capacity();
+        byte[] buffer = takeArray(size);
+        try {
+          int bytesRead = -1;
+          while ((bytesRead = in.read(buffer, 0, size)) != -1) {
+            if (bytesRead > byteBuffer.remaining()) {
+              drain(byteBuffer, channel);
+            }
+            byteBuffer.put(buffer, 0, bytesRead);
+            if (hasher != null) {
+              hasher.update(buffer, 0, bytesRead);
+            }
+            byteCount += bytesRead;
+          }
+        } finally {
+          giveArray(buffer);
+        }
+        drain(byteBuffer, channel);
       }
 
     } catch (IOException e) {
@@ -73,6 +153,17 @@ public class FileChannelUtil {
    * @return
    */
   public long read(File src, OutputStream dest) {
+    return read(src, dest, null);
+  }
+
+  /**
+   * 读取文件到OutputStream, 同时计算读取内容的Hash
+   * @param src 要读取的文件
+   * @param dest 读取的内容存放到这里
+   * @param hasher 读取的内容同时输入到hasher, 可以为{@code null}
+   * @return
+   */
+  public long read(File src, OutputStream dest, Hasher hasher) {
     FileChannel channel = null;
     FileInputStream in = null;
     int bytesRead = -1;
@@ -80,13 +171,31 @@ public class FileChannelUtil {
     try {
       in = new FileInputStream(src);
       channel = in.getChannel();
-      ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE * 1024);
-      while ((bytesRead = channel.read(buffer)) != -1) {
-        buffer.flip();
-        dest.write(buffer.array(), 0, bytesRead);
-        dest.flush();
-        buffer.clear();
-        bytes += bytesRead;
+      // the content is not seen by the JVM, unless it is hashed
+      if (hasher == null && dest instanceof WritableByteChannel) {
+        return transferTo(channel, 0L, channel.size(), (WritableByteChannel) dest);
+      }
+      if (hasher == null && dest instanceof FileOutputStream) {
+        return transferTo(channel, 0L, channel.size(), ((FileOutputStream) dest).getChannel());
+      }
+      try (ByteBufferPool.Lease lease = pool.acquire(bufferSize)) {
+        ByteBuffer byteBuffer = lease.buffer();
+        byte[] buffer = takeArray(byteBuffer.capacity());
+        try {
+          while (channel.read(byteBuffer) != -1) {
+            byteBuffer.flip();
+            bytesRead = byteBuffer.remaining();
+            byteBuffer.get(buffer, 0, bytesRead);
+            dest.write(buffer, 0, bytesRead);
+            if (hasher != null) {
+              hasher.update(buffer, 0, bytesRead);
+            }
+            bytes += bytesRead;
+            byteBuffer.clear();
+          }
+        } finally {
+          giveArray(buffer);
+        }
       }
     } catch (Exception e) {
       throw Exceptions.unchecked(e);
@@ -108,4 +217,142 @@ public class FileChannelUtil {
     }
     return bytes;
   }
+
+  /**
+   * 读取文件到Channel, 例如SocketChannel, 使用{@link FileChannel#transferTo(long, long, WritableByteChannel)}, 内容不经过JVM的内存.
+   * 不关闭dest.
+   * @param src 要读取的文件
+   * @param dest 读取的内容写入这里
+   * @return 传输的字节数
+   */
+  public long read(File src, WritableByteChannel dest) {
+    try (FileChannel channel = FileChannel.open(src.toPath(), StandardOpenOption.READ)) {
+      return transferTo(channel, 0L, channel.size(), dest);
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  /**
+   * 从Channel写文件, 使用{@link FileChannel#transferFrom(ReadableByteChannel, long, long)}, 直到src结束. 不关闭src.
+   * @param dest 要写入的文件
+   * @param src 要写入的内容, 必须是阻塞模式
+   * @return 传输的字节数
+   */
+  public long write(File dest, ReadableByteChannel src) {
+    try (FileChannel channel = FileChannel.open(dest.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      return transferFrom(src, channel, 0L, Long.MAX_VALUE);
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  /**
+   * 复制文件, 文件之间直接传输, 目标文件已经存在则被覆盖
+   * @param src 源文件
+   * @param dest 目标文件
+   * @return 复制的字节数
+   */
+  public long copy(File src, File dest) {
+    try (FileChannel in = FileChannel.open(src.toPath(), StandardOpenOption.READ);
+        FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      return transferTo(in, 0L, in.size(), out);
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  /**
+   * Takes the array of this thread out of the cache, so that a nested call does not share it. It may be longer than the given size.
+   */
+  private static byte[] takeArray(int size) {
+    byte[] array = arrays.get();
+    if (array == null || array.length < size) {
+      return new byte[size];
+    }
+    arrays.set(null);
+    return array;
+  }
+
+  private static void giveArray(byte[] array) {
+    byte[] cached = arrays.get();
+    if (array.length <= MAX_CACHED_ARRAY_SIZE && (cached == null || cached.length < array.length)) {
+      arrays.set(array);
+    }
+  }
+
+  /**
+   * 把文件的一部分传输到Channel, 超过{@link #TRANSFER_CHUNK}的分多次传输. 文件在传输中被截短时在文件末尾停止.
+   * @param src 源文件
+   * @param position 开始传输的位置
+   * @param count 传输的字节数
+   * @param dest 目标Channel, 不是FileChannel时必须是阻塞模式
+   * @return 传输的字节数
+   */
+  public static long transferTo(FileChannel src, long position, long count, WritableByteChannel dest) throws IOException {
+    long transferred = 0L;
+    while (transferred < count) {
+      long n = src.transferTo(position + transferred, Math.min(count - transferred, TRANSFER_CHUNK), dest);
+      if (n <= 0) {
+        if (position + transferred >= src.size()) {
+          break;
+        }
+        // not supported by the channels, or nothing could be written
+        n = copy(src, position + transferred, count - transferred, dest);
+      }
+      transferred += n;
+    }
+    return transferred;
+  }
+
+  /**
+   * 从Channel传输到文件的指定位置, 超过{@link #TRANSFER_CHUNK}的分多次传输, 在src结束时停止.
+   * @param src 源Channel, 必须是阻塞模式
+   * @param dest 目标文件
+   * @param position 开始写入的位置
+   * @param count 最多传输的字节数, {@link Long#MAX_VALUE}为直到src结束
+   * @return 传输的字节数
+   */
+  public static long transferFrom(ReadableByteChannel src, FileChannel dest, long position, long count) throws IOException {
+    long transferred = 0L;
+    while (transferred < count) {
+      long n = dest.transferFrom(src, position + transferred, Math.min(count - transferred, TRANSFER_CHUNK));
+      if (n <= 0) {
+        break;
+      }
+      transferred += n;
+    }
+    return transferred;
+  }
+
+  /**
+   * Copies through a pooled buffer, when transferTo makes no progress.
+   */
+  private static long copy(FileChannel src, long position, long count, WritableByteChannel dest) throws IOException {
+    try (ByteBufferPool.Lease lease = ByteBufferPool.getDefault().acquire((int) Math.min(count, DEFAULT_BUFFER_SIZE))) {
+      ByteBuffer buffer = lease.buffer();
+      int n = src.read(buffer, position);
+      if (n <= 0) {
+        return Math.max(n, 0);
+      }
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        dest.write(buffer);
+      }
+      return n;
+    }
+  }
+
+  /**
+   * Writes the content of the buffer to the channel and clears it.
+   */
+  private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
 }
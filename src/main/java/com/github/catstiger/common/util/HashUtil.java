@@ -1,20 +1,41 @@
 package com.github.catstiger.common.util;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
-import java.security.GeneralSecurityException;
+import java.nio.file.Path;
+import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.crypto.Mac;
-import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
 /**
- * Utility class for hashing.
+ * Utility class for hashing. See {@link Hasher} for hashing input chunk by chunk.
  *
  * @author liaoxuefeng
  */
 public class HashUtil {
+  /**
+   * {@link MessageDigest} and {@link Mac} are not thread-safe, each thread keeps its own instances, so that the provider lookup of
+   * {@code getInstance} is done once per thread and algorithm. Only the one-shot {@code byte[]} and {@code String} methods use them, the other
+   * methods create their own digest: a stream or channel read by them may itself hash on the same thread and reset the shared instance. A
+   * {@link Mac} is initialized with a placeholder key after each use, so that the key of the caller is not kept by the thread.
+   */
+  private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> newDigest("SHA-1"));
+
+  private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> newDigest("SHA-256"));
+
+  private static final ThreadLocal<MessageDigest> SHA512 = ThreadLocal.withInitial(() -> newDigest("SHA-512"));
+
+  private static final ThreadLocal<Mac> HMAC_SHA1 = ThreadLocal.withInitial(() -> newMac("HmacSHA1"));
+
+  private static final ThreadLocal<Mac> HMAC_SHA256 = ThreadLocal.withInitial(() -> newMac("HmacSHA256"));
+
+  private static final byte[] PLACEHOLDER_KEY = new byte[1];
 
   /**
    * Generate SHA-1 as hex string (all lower-case).
@@ -33,15 +54,7 @@ public class HashUtil {
    * @return Hex string.
    */
   public static String sha1(byte[] input) {
-    MessageDigest md = null;
-    try {
-      md = MessageDigest.getInstance("SHA1");
-    } catch (NoSuchAlgorithmException e) {
-      throw new RuntimeException(e);
-    }
-    md.update(input);
-    byte[] digest = md.digest();
-    return ByteUtil.toHexString(digest);
+    return ByteUtil.toHexString(sha1AsBytes(input));
   }
 
   public static byte[] sha1AsBytes(String input) {
@@ -55,14 +68,7 @@ public class HashUtil {
    * @return Bytes.
    */
   public static byte[] sha1AsBytes(byte[] input) {
-    MessageDigest md = null;
-    try {
-      md = MessageDigest.getInstance("SHA1");
-    } catch (NoSuchAlgorithmException e) {
-      throw new RuntimeException(e);
-    }
-    md.update(input);
-    return md.digest();
+    return digest(SHA1).digest(input);
   }
 
   /**
@@ -92,15 +98,7 @@ public class HashUtil {
    * @return Hex string.
    */
   public static String sha256(byte[] input) {
-    MessageDigest md = null;
-    try {
-      md = MessageDigest.getInstance("SHA-256");
-    } catch (NoSuchAlgorithmException e) {
-      throw new RuntimeException(e);
-    }
-    md.update(input);
-    byte[] digest = md.digest();
-    return ByteUtil.toHexString(digest);
+    return ByteUtil.toHexString(sha256AsBytes(input));
   }
 
   /**
@@ -110,14 +108,7 @@ public class HashUtil {
    * @return SHA bytes.
    */
   public static byte[] sha256AsBytes(byte[] input) {
-    MessageDigest md = null;
-    try {
-      md = MessageDigest.getInstance("SHA-256");
-    } catch (NoSuchAlgorithmException e) {
-      throw new RuntimeException(e);
-    }
-    md.update(input);
-    return md.digest();
+    return digest(SHA256).digest(input);
   }
 
   /**
@@ -127,32 +118,179 @@ public class HashUtil {
    * @return SHA bytes.
    */
   public static byte[] sha512AsBytes(byte[] input) {
-    MessageDigest md = null;
-    try {
-      md = MessageDigest.getInstance("SHA-512");
-    } catch (NoSuchAlgorithmException e) {
-      throw new RuntimeException(e);
-    }
-    md.update(input);
+    return digest(SHA512).digest(input);
+  }
+
+  /**
+   * Generate SHA-1 of the stream as bytes, the stream is read until its end but not closed.
+   *
+   * @param in Input stream.
+   * @return Bytes.
+   */
+  public static byte[] sha1AsBytes(InputStream in) {
+    MessageDigest md = newDigest("SHA-1");
+    Hasher.update(md, in);
     return md.digest();
   }
 
+  /**
+   * Generate SHA-1 of the channel as bytes, the channel is read until its end but not closed.
+   *
+   * @param channel Input channel.
+   * @return Bytes.
+   */
+  public static byte[] sha1AsBytes(ReadableByteChannel channel) {
+    MessageDigest md = newDigest("SHA-1");
+    Hasher.update(md, channel);
+    return md.digest();
+  }
+
+  /**
+   * Generate SHA-1 of the remaining bytes of the buffer, which may be direct. The position of the buffer is not changed.
+   *
+   * @param input Input buffer.
+   * @return Bytes.
+   */
+  public static byte[] sha1AsBytes(ByteBuffer input) {
+    MessageDigest md = newDigest("SHA-1");
+    Hasher.update(md, input);
+    return md.digest();
+  }
+
+  /**
+   * Generate SHA-1 of the file as bytes, the file is read through memory-mapped regions.
+   *
+   * @param file Input file.
+   * @return Bytes.
+   */
+  public static byte[] sha1AsBytes(Path file) {
+    MessageDigest md = newDigest("SHA-1");
+    Hasher.update(md, file);
+    return md.digest();
+  }
+
+  /**
+   * Generate SHA-1 of the file as hex string (all lower-case), the file is read through memory-mapped regions.
+   *
+   * @param file Input file.
+   * @return Hex string.
+   */
+  public static String sha1(Path file) {
+    return ByteUtil.toHexString(sha1AsBytes(file));
+  }
+
+  /**
+   * Generate SHA-256 of the stream as bytes, the stream is read until its end but not closed.
+   *
+   * @param in Input stream.
+   * @return Bytes.
+   */
+  public static byte[] sha256AsBytes(InputStream in) {
+    MessageDigest md = newDigest("SHA-256");
+    Hasher.update(md, in);
+    return md.digest();
+  }
+
+  /**
+   * Generate SHA-256 of the channel as bytes, the channel is read until its end but not closed.
+   *
+   * @param channel Input channel.
+   * @return Bytes.
+   */
+  public static byte[] sha256AsBytes(ReadableByteChannel channel) {
+    MessageDigest md = newDigest("SHA-256");
+    Hasher.update(md, channel);
+    return md.digest();
+  }
+
+  /**
+   * Generate SHA-256 of the remaining bytes of the buffer, which may be direct. The position of the buffer is not changed.
+   *
+   * @param input Input buffer.
+   * @return Bytes.
+   */
+  public static byte[] sha256AsBytes(ByteBuffer input) {
+    MessageDigest md = newDigest("SHA-256");
+    Hasher.update(md, input);
+    return md.digest();
+  }
+
+  /**
+   * Generate SHA-256 of the file as bytes, the file is read through memory-mapped regions.
+   *
+   * @param file Input file.
+   * @return Bytes.
+   */
+  public static byte[] sha256AsBytes(Path file) {
+    MessageDigest md = newDigest("SHA-256");
+    Hasher.update(md, file);
+    return md.digest();
+  }
+
+  /**
+   * Generate SHA-256 of the file as hex string (all lower-case), the file is read through memory-mapped regions.
+   *
+   * @param file Input file.
+   * @return Hex string.
+   */
+  public static String sha256(Path file) {
+    return ByteUtil.toHexString(sha256AsBytes(file));
+  }
+
+  /**
+   * Generate SHA-1 of the composite bytes as bytes, without flattening them.
+   *
+   * @param input Input bytes.
+   * @return Bytes.
+   */
+  public static byte[] sha1AsBytes(CompositeBytes input) {
+    MessageDigest md = newDigest("SHA-1");
+    input.update(md);
+    return md.digest();
+  }
+
+  /**
+   * Generate SHA-256 of the composite bytes as bytes, without flattening them.
+   *
+   * @param input Input bytes.
+   * @return Bytes.
+   */
+  public static byte[] sha256AsBytes(CompositeBytes input) {
+    MessageDigest md = newDigest("SHA-256");
+    input.update(md);
+    return md.digest();
+  }
+
+  /**
+   * Generate SHA-256 tree hash of the file, chunks of {@link TreeHash#DEFAULT_CHUNK_SIZE} are hashed in parallel on the common pool. See
+   * {@link TreeHash} for the format.
+   *
+   * @param file Input file.
+   * @return Tree hash.
+   */
+  public static TreeHash treeHash(Path file) {
+    return TreeHash.of(file, TreeHash.DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Generate SHA-256 tree hash of the file, chunks are hashed in parallel on the given pool. See {@link TreeHash} for the format.
+   *
+   * @param file Input file.
+   * @param chunkSize Size of the chunks in bytes.
+   * @param pool The pool hashing the chunks.
+   * @return Tree hash.
+   */
+  public static TreeHash treeHash(Path file, int chunkSize, ForkJoinPool pool) {
+    return TreeHash.of(file, chunkSize, pool);
+  }
+
   /**
    * Do HMAC-SHA256.
    *
    * @return Hex string.
    */
   public static byte[] hmacSha256AsBytes(byte[] data, byte[] key) {
-    SecretKey skey = new SecretKeySpec(key, "HmacSHA256");
-    Mac mac;
-    try {
-      mac = Mac.getInstance("HmacSHA256");
-      mac.init(skey);
-    } catch (GeneralSecurityException e) {
-      throw new RuntimeException(e);
-    }
-    mac.update(data);
-    return mac.doFinal();
+    return mac(HMAC_SHA256, key, data);
   }
 
   /**
@@ -170,16 +308,7 @@ public class HashUtil {
    * @return byte[] as result.
    */
   public static byte[] hmacSha1(byte[] data, byte[] key) {
-    SecretKey skey = new SecretKeySpec(key, "HmacSHA1");
-    Mac mac;
-    try {
-      mac = Mac.getInstance("HmacSHA1");
-      mac.init(skey);
-    } catch (GeneralSecurityException e) {
-      throw new RuntimeException(e);
-    }
-    mac.update(data);
-    return mac.doFinal();
+    return mac(HMAC_SHA1, key, data);
   }
 
   /**
@@ -208,4 +337,56 @@ public class HashUtil {
   public static String hmacSha256(byte[] data, String key) {
     return hmacSha256(data, key.getBytes(StandardCharsets.UTF_8));
   }
+
+  /**
+   * Creates a {@link MessageDigest} of the given algorithm.
+   */
+  static MessageDigest newDigest(String algorithm) {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Creates a {@link Mac} of the given algorithm, not initialized.
+   */
+  static Mac newMac(String algorithm) {
+    try {
+      return Mac.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Returns the SHA-256 {@link MessageDigest} of the current thread, reset.
+   */
+  static MessageDigest sha256Digest() {
+    return digest(SHA256);
+  }
+
+  private static MessageDigest digest(ThreadLocal<MessageDigest> digests) {
+    MessageDigest md = digests.get();
+    md.reset();
+    return md;
+  }
+
+  private static byte[] mac(ThreadLocal<Mac> macs, byte[] key, byte[] data) {
+    Mac mac = macs.get();
+    try {
+      mac.init(new SecretKeySpec(key, mac.getAlgorithm()));
+      return mac.doFinal(data);
+    } catch (InvalidKeyException e) {
+      throw new RuntimeException(e);
+    } finally {
+      try {
+        mac.init(new SecretKeySpec(PLACEHOLDER_KEY, mac.getAlgorithm()));
+      } catch (InvalidKeyException e) {
+        // the Mac is dropped rather than kept with the key
+        macs.remove();
+      }
+    }
+  }
 }
@@ -0,0 +1,184 @@
+package com.github.catstiger.common.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * Incremental hasher, the input can be fed chunk by chunk from arrays, buffers, streams, channels and files, so that large inputs never have to be
+ * held in memory. Not thread-safe.
+ *
+ * <pre>
+ * Hasher hasher = Hasher.sha256();
+ * new FileChannelUtil().write(dest, upload, hasher);
+ * String checksum = hasher.hexDigest();
+ * </pre>
+ *
+ * @see HashUtil
+ */
+public final class Hasher {
+  static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Files are memory-mapped by regions of this size.
+   */
+  static final long MAP_SIZE = 64L * 1024 * 1024;
+
+  private final MessageDigest md;
+
+  private Hasher(MessageDigest md) {
+    this.md = md;
+  }
+
+  /**
+   * Hasher of the given {@link MessageDigest} algorithm.
+   */
+  public static Hasher of(String algorithm) {
+    return new Hasher(HashUtil.newDigest(algorithm));
+  }
+
+  public static Hasher sha1() {
+    return of("SHA-1");
+  }
+
+  public static Hasher sha256() {
+    return of("SHA-256");
+  }
+
+  public static Hasher sha512() {
+    return of("SHA-512");
+  }
+
+  public Hasher update(byte[] input) {
+    md.update(input);
+    return this;
+  }
+
+  public Hasher update(byte[] input, int offset, int len) {
+    md.update(input, offset, len);
+    return this;
+  }
+
+  /**
+   * Feeds the string encoded in UTF-8.
+   */
+  public Hasher update(String input) {
+    md.update(input.getBytes(StandardCharsets.UTF_8));
+    return this;
+  }
+
+  /**
+   * Feeds the remaining bytes of the buffer, which may be direct. The position of the buffer is not changed.
+   */
+  public Hasher update(ByteBuffer input) {
+    update(md, input);
+    return this;
+  }
+
+  /**
+   * Feeds the content of the composite bytes, without flattening it.
+   */
+  public Hasher update(CompositeBytes input) {
+    input.update(md);
+    return this;
+  }
+
+  /**
+   * Feeds the stream until its end, the stream is not closed.
+   */
+  public Hasher update(InputStream in) {
+    update(md, in);
+    return this;
+  }
+
+  /**
+   * Feeds the channel until its end, the channel is not closed.
+   */
+  public Hasher update(ReadableByteChannel channel) {
+    update(md, channel);
+    return this;
+  }
+
+  /**
+   * Feeds the content of the file, which is read through memory-mapped regions.
+   */
+  public Hasher update(Path file) {
+    update(md, file);
+    return this;
+  }
+
+  /**
+   * Completes the hash and resets the hasher for reuse.
+   *
+   * @return the hash as bytes
+   */
+  public byte[] digest() {
+    return md.digest();
+  }
+
+  /**
+   * Completes the hash and resets the hasher for reuse.
+   *
+   * @return the hash as hex string (all lower-case)
+   */
+  public String hexDigest() {
+    return ByteUtil.toHexString(md.digest());
+  }
+
+  public Hasher reset() {
+    md.reset();
+    return this;
+  }
+
+  public String getAlgorithm() {
+    return md.getAlgorithm();
+  }
+
+  static void update(MessageDigest md, ByteBuffer input) {
+    md.update(input.duplicate());
+  }
+
+  static void update(MessageDigest md, InputStream in) {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    try {
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        md.update(buffer, 0, n);
+      }
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  static void update(MessageDigest md, ReadableByteChannel channel) {
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    try {
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        md.update(buffer);
+        buffer.clear();
+      }
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  static void update(MessageDigest md, Path file) {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      for (long position = 0; position < size; position += MAP_SIZE) {
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_SIZE, size - position));
+        md.update(region);
+      }
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+  }
+}
@@ -1,49 +1,200 @@
 package com.github.catstiger.common.util;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Hex codec, encodes to lower-case and decodes both cases. Each byte is encoded by one lookup of a 256-entry table giving both characters, each
+ * character is decoded by one lookup of a 256-entry table. The methods taking a destination write into the caller's buffer without allocation.
+ */
 public final class Hex {
 
   private static final char[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
 
+  /**
+   * Both characters of each byte, packed as (high char &lt;&lt; 8) | low char.
+   */
+  private static final short[] ENCODE = new short[256];
+
+  /**
+   * Value of each character, -1 if not a hex digit.
+   */
+  private static final byte[] DECODE = new byte[256];
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      ENCODE[i] = (short) (HEX[i >>> 4] << 8 | HEX[i & 0x0F]);
+      DECODE[i] = -1;
+    }
+    for (int i = 0; i < 16; i++) {
+      DECODE[HEX[i]] = (byte) i;
+      DECODE[Character.toUpperCase(HEX[i])] = (byte) i;
+    }
+  }
+
   /**
    * HEX Encode
    */
   public static char[] encode(byte[] bytes) {
-    final int nBytes = bytes.length;
-    char[] result = new char[2 * nBytes];
+    char[] result = new char[2 * bytes.length];
+    encode(bytes, 0, bytes.length, result, 0);
+    return result;
+  }
 
-    int j = 0;
-    for (int i = 0; i < nBytes; i++) {
-      // Char for top 4 bits
-      result[j++] = HEX[(0xF0 & bytes[i]) >>> 4];
-      // Bottom 4
-      result[j++] = HEX[(0x0F & bytes[i])];
+  /**
+   * HEX Encode, to a String.
+   */
+  public static String encodeToString(byte[] bytes) {
+    return encodeToString(bytes, 0, bytes.length);
+  }
+
+  /**
+   * HEX Encode {@code len} bytes from {@code offset}, to a String.
+   */
+  public static String encodeToString(byte[] bytes, int offset, int len) {
+    byte[] result = new byte[2 * len];
+    encode(bytes, offset, len, result, 0);
+    return new String(result, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * HEX Encode a single byte, to a String.
+   */
+  public static String encodeToString(byte b) {
+    int chars = ENCODE[b & 0xFF];
+    return new String(new char[] { (char) (chars >>> 8), (char) (chars & 0xFF) });
+  }
+
+  /**
+   * HEX Encode {@code len} bytes from {@code offset} into {@code dest} from {@code destOffset}, {@code 2 * len} characters are written.
+   */
+  public static void encode(byte[] bytes, int offset, int len, char[] dest, int destOffset) {
+    checkRange(bytes.length, offset, len);
+    checkRange(dest.length, destOffset, 2 * len);
+    int j = destOffset;
+    for (int i = offset, end = offset + len; i < end; i++) {
+      int chars = ENCODE[bytes[i] & 0xFF];
+      dest[j++] = (char) (chars >>> 8);
+      dest[j++] = (char) (chars & 0xFF);
     }
+  }
 
-    return result;
+  /**
+   * HEX Encode {@code len} bytes from {@code offset} into {@code dest} from {@code destOffset} as ASCII, {@code 2 * len} bytes are written.
+   */
+  public static void encode(byte[] bytes, int offset, int len, byte[] dest, int destOffset) {
+    checkRange(bytes.length, offset, len);
+    checkRange(dest.length, destOffset, 2 * len);
+    int j = destOffset;
+    for (int i = offset, end = offset + len; i < end; i++) {
+      int chars = ENCODE[bytes[i] & 0xFF];
+      dest[j++] = (byte) (chars >>> 8);
+      dest[j++] = (byte) chars;
+    }
   }
 
   /**
-   * HEX Encode
+   * HEX Encode the remaining bytes of {@code src} into {@code dest} as ASCII. The positions of both buffers are advanced.
+   *
+   * @throws BufferOverflowException if {@code dest} has not enough room, nothing is written then
+   */
+  public static void encode(ByteBuffer src, ByteBuffer dest) {
+    if (dest.remaining() < 2 * src.remaining()) {
+      throw new BufferOverflowException();
+    }
+    while (src.hasRemaining()) {
+      int chars = ENCODE[src.get() & 0xFF];
+      dest.put((byte) (chars >>> 8));
+      dest.put((byte) chars);
+    }
+  }
+
+  /**
+   * HEX Decode
    */
   public static byte[] decode(CharSequence s) {
     int chars = s.length();
-
     if (chars % 2 != 0) {
       throw new IllegalArgumentException("Hex-encoded string must have an even number of characters");
     }
-
     byte[] result = new byte[chars / 2];
+    decode(s, 0, chars, result, 0);
+    return result;
+  }
 
+  /**
+   * HEX Decode {@code len} characters from {@code offset} into {@code dest} from {@code destOffset}, {@code len / 2} bytes are written.
+   */
+  public static void decode(CharSequence s, int offset, int len, byte[] dest, int destOffset) {
+    if (len % 2 != 0) {
+      throw new IllegalArgumentException("Hex-encoded string must have an even number of characters");
+    }
+    checkRange(s.length(), offset, len);
+    checkRange(dest.length, destOffset, len / 2);
+    int j = destOffset;
+    for (int i = offset, end = offset + len; i < end; i += 2) {
+      dest[j++] = (byte) (digit(s.charAt(i), i) << 4 | digit(s.charAt(i + 1), i + 1));
+    }
+  }
+
+  /**
+   * HEX Decode {@code len} ASCII characters from {@code offset} into {@code dest} from {@code destOffset}, {@code len / 2} bytes are written.
+   */
+  public static void decode(byte[] ascii, int offset, int len, byte[] dest, int destOffset) {
+    if (len % 2 != 0) {
+      throw new IllegalArgumentException("Hex-encoded string must have an even number of characters");
+    }
+    checkRange(ascii.length, offset, len);
+    checkRange(dest.length, destOffset, len / 2);
+    int j = destOffset;
+    for (int i = offset, end = offset + len; i < end; i += 2) {
+      dest[j++] = (byte) (digit((char) (ascii[i] & 0xFF), i) << 4 | digit((char) (ascii[i + 1] & 0xFF), i + 1));
+    }
+  }
+
+  /**
+   * HEX Decode the characters into {@code dest}, the position of {@code dest} is advanced.
+   *
+   * @throws BufferOverflowException if {@code dest} has not enough room, nothing is written then
+   */
+  public static void decode(CharSequence s, ByteBuffer dest) {
+    int chars = s.length();
+    if (chars % 2 != 0) {
+      throw new IllegalArgumentException("Hex-encoded string must have an even number of characters");
+    }
+    if (dest.remaining() < chars / 2) {
+      throw new BufferOverflowException();
+    }
     for (int i = 0; i < chars; i += 2) {
-      int msb = Character.digit(s.charAt(i), 16);
-      int lsb = Character.digit(s.charAt(i + 1), 16);
+      dest.put((byte) (digit(s.charAt(i), i) << 4 | digit(s.charAt(i + 1), i + 1)));
+    }
+  }
 
-      if (msb < 0 || lsb < 0) {
-        throw new IllegalArgumentException("Non-hex character in input: " + s);
+  /**
+   * Returns {@code true} if all the characters are hex digits, of either case.
+   */
+  public static boolean isHex(CharSequence s) {
+    for (int i = 0, n = s.length(); i < n; i++) {
+      char c = s.charAt(i);
+      if (c > 0xFF || DECODE[c] < 0) {
+        return false;
       }
-      result[i / 2] = (byte) ((msb << 4) | lsb);
     }
-    return result;
+    return true;
   }
 
+  private static int digit(char c, int index) {
+    int d = c > 0xFF ? -1 : DECODE[c];
+    if (d < 0) {
+      throw new IllegalArgumentException("Non-hex character '" + c + "' at index " + index);
+    }
+    return d;
+  }
+
+  private static void checkRange(int length, int offset, int len) {
+    if (offset < 0 || len < 0 || offset > length - len) {
+      throw new IndexOutOfBoundsException("offset " + offset + ", length " + len + ", size " + length);
+    }
+  }
 }
@@ -0,0 +1,104 @@
+package com.github.catstiger.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * HMAC signer of a fixed key. Each thread keeps a {@link Mac} already initialized with the key, so signing does not look up the provider nor
+ * initialize the key again. Instances are thread-safe and meant to be shared.
+ * <p>
+ * The key is therefore retained by every thread which signed with the instance, possibly until the thread terminates, even after the instance is
+ * no longer used. Use {@link HashUtil#hmacSha256AsBytes(byte[], byte[])}, which does not retain the key,
+ * for keys that must not outlive their use.
+ *
+ * <pre>
+ * private static final HmacSigner SIGNER = HmacSigner.sha256(secret);
+ * ...
+ * if (!SIGNER.verify(body, signature)) { ... }
+ * </pre>
+ */
+public final class HmacSigner {
+  private final String algorithm;
+
+  private final SecretKeySpec key;
+
+  private final ThreadLocal<Mac> macs;
+
+  /**
+   * @param algorithm the HMAC algorithm, e.g. HmacSHA256
+   * @param key the secret key
+   */
+  public HmacSigner(String algorithm, byte[] key) {
+    this.algorithm = algorithm;
+    this.key = new SecretKeySpec(key, algorithm);
+    this.macs = ThreadLocal.withInitial(this::newMac);
+    // fail fast on unknown algorithm or invalid key
+    macs.get();
+  }
+
+  /**
+   * HMAC-SHA256 signer of the given key.
+   */
+  public static HmacSigner sha256(byte[] key) {
+    return new HmacSigner("HmacSHA256", key);
+  }
+
+  /**
+   * HMAC-SHA256 signer of the given key, the key is encoded in UTF-8.
+   */
+  public static HmacSigner sha256(String key) {
+    return sha256(key.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * HMAC-SHA1 signer of the given key.
+   */
+  public static HmacSigner sha1(byte[] key) {
+    return new HmacSigner("HmacSHA1", key);
+  }
+
+  /**
+   * Signs the data.
+   *
+   * @return the signature as bytes
+   */
+  public byte[] sign(byte[] data) {
+    return macs.get().doFinal(data);
+  }
+
+  /**
+   * Signs the data, the data is encoded in UTF-8.
+   *
+   * @return the signature as hex string (all lower-case)
+   */
+  public String signHex(String data) {
+    return ByteUtil.toHexString(sign(data.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Verifies the signature of the data, in time independent of where the signature differs.
+   *
+   * @return {@code true} if the signature matches
+   */
+  public boolean verify(byte[] data, byte[] signature) {
+    return MessageDigest.isEqual(sign(data), signature);
+  }
+
+  public String getAlgorithm() {
+    return algorithm;
+  }
+
+  private Mac newMac() {
+    Mac mac = HashUtil.newMac(algorithm);
+    try {
+      mac.init(key);
+    } catch (InvalidKeyException e) {
+      throw new RuntimeException(e);
+    }
+    return mac;
+  }
+}
@@ -1,14 +1,8 @@
 package com.github.catstiger.common.util;
 
-import java.net.InetAddress;
-import java.net.UnknownHostException;
-import java.time.LocalDate;
-import java.time.ZoneId;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /**
  * 53 bits unique id:
@@ -28,85 +22,166 @@ import org.slf4j.LoggerFactory;
  * Maximum SH = ----- -------- -------- -------- -------- -------- ---11111 = 31
  *
  * It can generate 64k unique id per IP and up to 2106-02-07T06:28:15Z.
+ *
+ * The shard is the worker id given by {@link WorkerIdProviders#defaults()}. Use {@link #setGenerator(IdGenerator)} for another {@link IdLayout}
+ * or {@link WorkerIdProvider}.
  */
 public final class IDUtil {
 
-  private static final Logger logger = LoggerFactory.getLogger(IDUtil.class);
-
-  private static final Pattern PATTERN_LONG_ID = Pattern.compile("^([0-9]{15})([0-9a-f]{32})([0-9a-f]{3})$");
-
-  private static final Pattern PATTERN_HOSTNAME = Pattern.compile("^.*\\D+([0-9]+)$");
-
-  private static final long OFFSET = LocalDate.of(2000, 1, 1).atStartOfDay(ZoneId.of("Z")).toEpochSecond();
+  private static final long OFFSET = IdGenerator.DEFAULT_EPOCH;
 
   private static final long MAX_NEXT = 0b11111_11111111_111L;
 
-  private static final long SHARD_ID = getServerIdAsLong();
+  private static final ThreadLocal<StringIdParser> stringIdParser = ThreadLocal.withInitial(StringIdParser::new);
 
-  private static long offset = 0;
-
-  private static long lastEpoch = 0;
+  /**
+   * The worker id is resolved at the first id generated, loading this class does not look up the host name.
+   */
+  private static volatile IdGenerator generator = new IdGenerator(IdLayout.DEFAULT, WorkerIdProviders.defaults());
 
   public static long nextId() {
-    return nextId(System.currentTimeMillis() / 1000);
+    return generator.nextId();
   }
 
-  private static synchronized long nextId(long epochSecond) {
-    if (epochSecond < lastEpoch) {
-      // warning: clock is turn back:
-      logger.warn("clock is back: " + epochSecond + " from previous:" + lastEpoch);
-      epochSecond = lastEpoch;
-    }
-    if (lastEpoch != epochSecond) {
-      lastEpoch = epochSecond;
-      reset();
-    }
-    offset++;
-    long next = offset & MAX_NEXT;
-    if (next == 0) {
-      logger.warn("maximum id reached in 1 second in epoch: " + epochSecond);
-      return nextId(epochSecond + 1);
-    }
-    return generateId(epochSecond, next, SHARD_ID);
+  /**
+   * Generates {@code n} unique ids at once, the ids are reserved by one atomic step.
+   *
+   * @param n number of ids
+   * @return the ids in increasing order
+   */
+  public static long[] nextIds(int n) {
+    return generator.nextIds(n);
+  }
+
+  /**
+   * Reserves a contiguous block of {@code n} sequence numbers by one atomic step. The block starts in the current second, and continues in the
+   * following seconds if there are not enough sequence numbers left in the current second.
+   *
+   * @param n number of ids
+   * @return the reserved ids
+   */
+  public static IdRange reserveRange(int n) {
+    return generator.reserveRange(n);
   }
 
-  private static void reset() {
-    offset = 0;
+  /**
+   * Returns the generator used by {@link #nextId()}.
+   */
+  public static IdGenerator getGenerator() {
+    return generator;
+  }
+
+  /**
+   * Replaces the generator used by {@link #nextId()}, for example to use another {@link IdLayout} or {@link WorkerIdProvider}.
+   * Call it at startup, before any id is generated, ids generated by different generators may collide.
+   */
+  public static void setGenerator(IdGenerator idGenerator) {
+    if (idGenerator == null) {
+      throw new IllegalArgumentException("Generator must not be null");
+    }
+    generator = idGenerator;
   }
 
   private static long generateId(long epochSecond, long next, long shardId) {
     return ((epochSecond - OFFSET) << 21) | (next << 5) | shardId;
   }
 
-  private static long getServerIdAsLong() {
-    try {
-      String hostname = InetAddress.getLocalHost().getHostName();
-      Matcher matcher = PATTERN_HOSTNAME.matcher(hostname);
-      if (matcher.matches()) {
-        long n = Long.parseLong(matcher.group(1));
-        if (n >= 0 && n < 8) {
-          logger.info("detect server id from host name {}: {}.", hostname, n);
-          return n;
+  /**
+   * Converts a legacy string id, composed as timestamp (15 digits) + uuid (32 hex) + serverId (000~fff), to a long id.
+   * 
+   * @param stringId the string id
+   * @return the long id
+   * @throws IllegalArgumentException if the string id is invalid
+   */
+  public static long stringIdToLongId(String stringId) {
+    return stringIdParser.get().parse(stringId);
+  }
+
+  /**
+   * Converts legacy string ids to long ids, see {@link #stringIdToLongId(String)}.
+   * 
+   * @param stringIds the string ids
+   * @return the long ids, in the same order
+   * @throws IllegalArgumentException if any of the string ids is invalid
+   */
+  public static long[] stringIdsToLongIds(String[] stringIds) {
+    StringIdParser parser = stringIdParser.get();
+    long[] ids = new long[stringIds.length];
+    for (int i = 0; i < stringIds.length; i++) {
+      ids[i] = parser.parse(stringIds[i]);
+    }
+    return ids;
+  }
+
+  /**
+   * Validates and decodes a string id in one pass, the SHA-1 digest and the buffers are reused.
+   */
+  private static final class StringIdParser {
+    private static final int LENGTH = 15 + 32 + 3;
+
+    private final MessageDigest sha1;
+
+    private final byte[] uuid = new byte[32];
+
+    private final byte[] digest = new byte[20];
+
+    StringIdParser() {
+      try {
+        sha1 = MessageDigest.getInstance("SHA-1");
+      } catch (NoSuchAlgorithmException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    long parse(String stringId) {
+      if (stringId == null || stringId.length() != LENGTH) {
+        throw new IllegalArgumentException("Invalid id: " + stringId);
+      }
+      long timestamp = 0;
+      for (int i = 0; i < 15; i++) {
+        char c = stringId.charAt(i);
+        if (c < '0' || c > '9') {
+          throw new IllegalArgumentException("Invalid id: " + stringId);
+        }
+        timestamp = timestamp * 10 + (c - '0');
+      }
+      for (int i = 0; i < 32; i++) {
+        char c = stringId.charAt(15 + i);
+        if (hexValue(c) < 0) {
+          throw new IllegalArgumentException("Invalid id: " + stringId);
         }
+        uuid[i] = (byte) c;
       }
-    } catch (UnknownHostException e) {
-      logger.warn("unable to get host name. set server id = 0.");
+      long serverId = 0;
+      for (int i = 47; i < LENGTH; i++) {
+        int n = hexValue(stringId.charAt(i));
+        if (n < 0) {
+          throw new IllegalArgumentException("Invalid id: " + stringId);
+        }
+        serverId = (serverId << 4) | n;
+      }
+
+      sha1.update(uuid, 0, uuid.length);
+      try {
+        sha1.digest(digest, 0, digest.length);
+      } catch (DigestException e) {
+        throw new RuntimeException(e);
+      }
+      long next = ((digest[0] << 24) | (digest[1] << 16) | (digest[2] << 8) | digest[3]) & MAX_NEXT;
+      return generateId(timestamp / 1000, next, serverId);
     }
-    return 0;
-  }
 
-  public static long stringIdToLongId(String stringId) {
-    // a stringId id is composed as timestamp (15) + uuid (32) + serverId (000~fff).
-    Matcher matcher = PATTERN_LONG_ID.matcher(stringId);
-    if (matcher.matches()) {
-      long epoch = Long.parseLong(matcher.group(1)) / 1000;
-      String uuid = matcher.group(2);
-      byte[] sha1 = HashUtil.sha1AsBytes(uuid);
-      long next = ((sha1[0] << 24) | (sha1[1] << 16) | (sha1[2] << 8) | sha1[3]) & MAX_NEXT;
-      long serverId = Long.parseLong(matcher.group(3), 16);
-      return generateId(epoch, next, serverId);
+    /**
+     * Value of a lower-case hex char, -1 if it is not.
+     */
+    private static int hexValue(char c) {
+      if (c >= '0' && c <= '9') {
+        return c - '0';
+      }
+      if (c >= 'a' && c <= 'f') {
+        return c - 'a' + 10;
+      }
+      return -1;
     }
-    throw new IllegalArgumentException("Invalid id: " + stringId);
   }
-
-}
\ No newline at end of file
+}
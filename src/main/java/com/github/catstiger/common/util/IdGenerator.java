@@ -0,0 +1,231 @@
+package com.github.catstiger.common.util;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lock-free generator of time-ordered unique ids, composed of the time since the epoch of the generator, a sequence within one tick of the time and
+ * the worker id, as described by an {@link IdLayout}.
+ * <p>
+ * The time is counted in seconds or in milliseconds:
+ * <ul>
+ * <li>seconds: when the sequence of a second is used up, ids are generated from the next second, ahead of the clock.</li>
+ * <li>milliseconds: when the sequence of a millisecond is used up, the caller waits for the next millisecond, so ids stay close to the clock.
+ * See {@link #millis(WorkerIdProvider)}.</li>
+ * </ul>
+ * <p>
+ * The worker id is resolved by the {@link WorkerIdProvider} when the first id is generated, not when the generator is created.
+ *
+ * @see IDUtil
+ */
+public final class IdGenerator {
+  private static final Logger logger = LoggerFactory.getLogger(IdGenerator.class);
+
+  /**
+   * The default epoch, 2000-01-01T00:00:00Z in seconds.
+   */
+  public static final long DEFAULT_EPOCH = LocalDate.of(2000, 1, 1).atStartOfDay(ZoneId.of("Z")).toEpochSecond();
+
+  /**
+   * Longest wait for the clock in milliseconds mode, the clock is considered turned back if it is behind the last used time by more.
+   */
+  private static final long MAX_WAIT_MILLIS = 1000;
+
+  private static final long PARK_NANOS = 50_000;
+
+  private final IdLayout layout;
+
+  private final WorkerIdProvider workerIdProvider;
+
+  private final long epoch;
+
+  private final TimeUnit resolution;
+
+  private final int sequenceBits;
+
+  private final long maxSequence;
+
+  /**
+   * The last used time (relative to the epoch) and sequence, packed as (time &lt;&lt; sequenceBits) | sequence, so that both are updated by one CAS.
+   */
+  private final AtomicLong state = new AtomicLong();
+
+  private volatile long workerId = WorkerIdProvider.UNKNOWN;
+
+  /**
+   * Creates a generator using {@link #DEFAULT_EPOCH}.
+   *
+   * @param layout the id layout
+   * @param workerIdProvider source of the worker id
+   */
+  public IdGenerator(IdLayout layout, WorkerIdProvider workerIdProvider) {
+    this(layout, workerIdProvider, DEFAULT_EPOCH);
+  }
+
+  /**
+   * Creates a generator counting time in seconds.
+   *
+   * @param layout the id layout
+   * @param workerIdProvider source of the worker id
+   * @param epoch the epoch in seconds, timestamps of the ids are counted from it
+   */
+  public IdGenerator(IdLayout layout, WorkerIdProvider workerIdProvider, long epoch) {
+    this(layout, workerIdProvider, epoch, TimeUnit.SECONDS);
+  }
+
+  /**
+   * @param layout the id layout
+   * @param workerIdProvider source of the worker id
+   * @param epoch the epoch in seconds, timestamps of the ids are counted from it
+   * @param resolution unit of the timestamps, {@link TimeUnit#SECONDS} or {@link TimeUnit#MILLISECONDS}
+   */
+  public IdGenerator(IdLayout layout, WorkerIdProvider workerIdProvider, long epoch, TimeUnit resolution) {
+    if (layout == null || workerIdProvider == null) {
+      throw new IllegalArgumentException("Layout and worker id provider must not be null");
+    }
+    if (resolution != TimeUnit.SECONDS && resolution != TimeUnit.MILLISECONDS) {
+      throw new IllegalArgumentException("Unsupported resolution: " + resolution);
+    }
+    this.layout = layout;
+    this.workerIdProvider = workerIdProvider;
+    this.resolution = resolution;
+    this.epoch = resolution.convert(epoch, TimeUnit.SECONDS);
+    this.sequenceBits = layout.getSequenceBits();
+    this.maxSequence = layout.maxSequence();
+  }
+
+  /**
+   * Creates a generator counting time in milliseconds since {@link #DEFAULT_EPOCH}, using {@link IdLayout#MILLIS}. It generates up to 4096 ids per
+   * millisecond.
+   *
+   * @param workerIdProvider source of the worker id
+   */
+  public static IdGenerator millis(WorkerIdProvider workerIdProvider) {
+    return new IdGenerator(IdLayout.MILLIS, workerIdProvider, DEFAULT_EPOCH, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Generates an unique id.
+   */
+  public long nextId() {
+    long start = reserve(1);
+    return layout.compose(start >>> sequenceBits, start & maxSequence, getWorkerId());
+  }
+
+  /**
+   * Generates {@code n} unique ids at once, the ids are reserved by one atomic step.
+   *
+   * @param n number of ids
+   * @return the ids in increasing order
+   */
+  public long[] nextIds(int n) {
+    return reserveRange(n).toArray();
+  }
+
+  /**
+   * Reserves a contiguous block of {@code n} sequence numbers by one atomic step. The block starts in the current tick of the time, and continues in
+   * the following ticks if there are not enough sequence numbers left in the current tick.
+   *
+   * @param n number of ids
+   * @return the reserved ids
+   */
+  public IdRange reserveRange(int n) {
+    if (n <= 0) {
+      throw new IllegalArgumentException("Number of ids must be positive: " + n);
+    }
+    long start = reserve(n);
+    return new IdRange(layout, start >>> sequenceBits, start & maxSequence, n, getWorkerId());
+  }
+
+  /**
+   * Returns the worker id, resolves it at the first call.
+   */
+  public long getWorkerId() {
+    long id = workerId;
+    if (id == WorkerIdProvider.UNKNOWN) {
+      id = resolveWorkerId();
+    }
+    return id;
+  }
+
+  public IdLayout getLayout() {
+    return layout;
+  }
+
+  public TimeUnit getResolution() {
+    return resolution;
+  }
+
+  private synchronized long resolveWorkerId() {
+    if (workerId == WorkerIdProvider.UNKNOWN) {
+      long id = workerIdProvider.getWorkerId(layout.maxShard());
+      if (id == WorkerIdProvider.UNKNOWN) {
+        logger.warn("unable to determine worker id. set server id = 0.");
+        id = 0;
+      }
+      if (id < 0 || id > layout.maxShard()) {
+        throw new IllegalStateException("Worker id " + id + " is out of range 0-" + layout.maxShard());
+      }
+      workerId = id;
+    }
+    return workerId;
+  }
+
+  /**
+   * Reserves {@code n} sequence numbers.
+   *
+   * @return the first reserved time and sequence, packed as {@link #state}
+   */
+  private long reserve(int n) {
+    long now = currentTime();
+    for (;;) {
+      long current = state.get();
+      long lastTime = current >>> sequenceBits;
+      if (resolution == TimeUnit.MILLISECONDS && lastTime - now < MAX_WAIT_MILLIS
+          && (now < lastTime || (now == lastTime && (current & maxSequence) == maxSequence))) {
+        // ids are ahead of the clock or the sequence is used up: wait for the next millisecond instead of borrowing it
+        LockSupport.parkNanos(PARK_NANOS);
+        now = currentTime();
+        continue;
+      }
+
+      long time = now;
+      if (time < lastTime) {
+        // clock is turn back, keep using the last time:
+        time = lastTime;
+      }
+      long next = (time == lastTime ? (current & maxSequence) + 1 : 1);
+      if (next > maxSequence) {
+        // borrow the next tick
+        time++;
+        next = 1;
+      }
+      // zero-based position of the last reserved sequence, counted from the first sequence of time
+      long last = next - 1 + n - 1;
+      long lastTimeOfRange = time + last / maxSequence;
+      if (lastTimeOfRange > layout.maxTime()) {
+        throw new IllegalStateException("Timestamp exceeds " + layout);
+      }
+      if (state.compareAndSet(current, (lastTimeOfRange << sequenceBits) | (last % maxSequence + 1))) {
+        if (now < lastTime) {
+          logger.warn("clock is back: " + (now + epoch) + " from previous:" + (lastTime + epoch));
+        }
+        if (resolution == TimeUnit.SECONDS && lastTimeOfRange > Math.max(now, lastTime)) {
+          logger.warn("maximum id reached in 1 second in epoch: " + (lastTimeOfRange - 1 + epoch));
+        }
+        return (time << sequenceBits) | next;
+      }
+    }
+  }
+
+  private long currentTime() {
+    long millis = System.currentTimeMillis();
+    return (resolution == TimeUnit.MILLISECONDS ? millis : millis / 1000) - epoch;
+  }
+}
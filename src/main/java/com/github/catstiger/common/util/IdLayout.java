@@ -0,0 +1,83 @@
+package com.github.catstiger.common.util;
+
+/**
+ * Bit layout of the ids generated by {@link IdGenerator}, from the highest bits to the lowest: timestamp, sequence, shard (worker id).
+ * <p>
+ * The total number of bits must not exceed 63, so that ids are positive. Keep it within 53 bits if ids are consumed by JavaScript.
+ */
+public final class IdLayout {
+  /**
+   * The layout of {@link IDUtil}: 32 bits of seconds, 16 bits of sequence and 5 bits of shard, 53 bits in total.
+   */
+  public static final IdLayout DEFAULT = new IdLayout(32, 16, 5);
+
+  /**
+   * The layout of {@link IdGenerator#millis(WorkerIdProvider)}: 41 bits of milliseconds (about 69 years), 12 bits of sequence and 10 bits of shard,
+   * 63 bits in total.
+   */
+  public static final IdLayout MILLIS = new IdLayout(41, 12, 10);
+
+  private final int timeBits;
+
+  private final int sequenceBits;
+
+  private final int shardBits;
+
+  /**
+   * @param timeBits bits of the timestamp
+   * @param sequenceBits bits of the sequence within one tick of the timestamp
+   * @param shardBits bits of the shard (worker id), may be 0
+   */
+  public IdLayout(int timeBits, int sequenceBits, int shardBits) {
+    if (timeBits <= 0 || sequenceBits <= 0 || shardBits < 0) {
+      throw new IllegalArgumentException("Invalid id layout: " + timeBits + "/" + sequenceBits + "/" + shardBits);
+    }
+    if (timeBits + sequenceBits + shardBits > 63) {
+      throw new IllegalArgumentException("Id layout exceeds 63 bits: " + timeBits + "/" + sequenceBits + "/" + shardBits);
+    }
+    this.timeBits = timeBits;
+    this.sequenceBits = sequenceBits;
+    this.shardBits = shardBits;
+  }
+
+  /**
+   * Composes an id.
+   *
+   * @param time the timestamp, relative to the epoch of the generator
+   * @param sequence the sequence
+   * @param shard the shard
+   * @return the id
+   */
+  public long compose(long time, long sequence, long shard) {
+    return (time << (sequenceBits + shardBits)) | (sequence << shardBits) | shard;
+  }
+
+  public long maxTime() {
+    return (1L << timeBits) - 1;
+  }
+
+  public long maxSequence() {
+    return (1L << sequenceBits) - 1;
+  }
+
+  public long maxShard() {
+    return (1L << shardBits) - 1;
+  }
+
+  public int getTimeBits() {
+    return timeBits;
+  }
+
+  public int getSequenceBits() {
+    return sequenceBits;
+  }
+
+  public int getShardBits() {
+    return shardBits;
+  }
+
+  @Override
+  public String toString() {
+    return "IdLayout[time=" + timeBits + ", sequence=" + sequenceBits + ", shard=" + shardBits + "]";
+  }
+}
@@ -0,0 +1,64 @@
+package com.github.catstiger.common.util;
+
+/**
+ * A block of ids reserved by {@link IdGenerator#reserveRange(int)}. The ids are computed on demand, the range does not hold them.
+ */
+public final class IdRange {
+  private final IdLayout layout;
+
+  private final long time;
+
+  private final long firstSequence;
+
+  private final int size;
+
+  private final long shard;
+
+  IdRange(IdLayout layout, long time, long firstSequence, int size, long shard) {
+    this.layout = layout;
+    this.time = time;
+    this.firstSequence = firstSequence;
+    this.size = size;
+    this.shard = shard;
+  }
+
+  /**
+   * Returns the number of ids in this range.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the id at the given index, ids are in increasing order.
+   *
+   * @param index index of the id, from 0 to {@link #size()} - 1
+   * @return the id
+   */
+  public long get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    long maxSequence = layout.maxSequence();
+    long position = firstSequence - 1 + index;
+    return layout.compose(time + position / maxSequence, position % maxSequence + 1, shard);
+  }
+
+  /**
+   * Returns all the ids of this range.
+   */
+  public long[] toArray() {
+    long maxSequence = layout.maxSequence();
+    long[] ids = new long[size];
+    long t = time;
+    long next = firstSequence;
+    for (int i = 0; i < size; i++) {
+      ids[i] = layout.compose(t, next, shard);
+      if (++next > maxSequence) {
+        t++;
+        next = 1;
+      }
+    }
+    return ids;
+  }
+}
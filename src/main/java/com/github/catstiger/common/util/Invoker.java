@@ -0,0 +1,133 @@
+package com.github.catstiger.common.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Reusable invoker of a {@link Method}, backed by a {@link MethodHandle} which is resolved once. The arity-specific {@code invoke0/invoke1/invoke2}
+ * methods do not allocate an argument array.
+ * <p>
+ * Unlike {@link Method#invoke(Object, Object...)}, exceptions thrown by the method are not wrapped in an
+ * {@link java.lang.reflect.InvocationTargetException}: unchecked exceptions are rethrown as they are, checked exceptions are wrapped by
+ * {@link Exceptions#unchecked(Throwable)}. Arguments of wrong types cause a {@link ClassCastException}.
+ * <p>
+ * Instances are cached by {@link ReflectUtil#invoker(Method)}, do not create them directly.
+ */
+public final class Invoker {
+  private final Method method;
+
+  private final int arity;
+
+  /**
+   * (Object target, Object arg1, ..., Object argN)Object
+   */
+  private final MethodHandle handle;
+
+  /**
+   * (Object target, Object[] args)Object
+   */
+  private final MethodHandle spreader;
+
+  Invoker(Method method) {
+    ReflectUtil.makeAccessible(method);
+    this.method = method;
+    this.arity = method.getParameterCount();
+    try {
+      MethodHandle mh = MethodHandles.lookup().unreflect(method).asFixedArity();
+      if (Modifier.isStatic(method.getModifiers())) {
+        mh = MethodHandles.dropArguments(mh, 0, Object.class);
+      }
+      this.handle = mh.asType(MethodType.genericMethodType(arity + 1));
+      this.spreader = handle.asSpreader(Object[].class, arity);
+    } catch (IllegalAccessException ex) {
+      throw new IllegalStateException("Unexpected reflection exception - " + ex.getClass().getName() + ": " + ex.getMessage());
+    }
+  }
+
+  /**
+   * Invokes the method with the given arguments.
+   *
+   * @param target the target object, may be {@code null} for static methods
+   * @param args the invocation arguments (may be {@code null} for methods without parameters)
+   * @return the invocation result, {@code null} for void methods
+   */
+  public Object invoke(Object target, Object... args) {
+    Object[] arguments = (args == null ? ReflectUtil.NO_ARGS : args);
+    if (arguments.length != arity) {
+      throw wrongArity(arguments.length);
+    }
+    try {
+      return (Object) spreader.invokeExact(target, arguments);
+    } catch (Throwable ex) {
+      throw FieldAccessor.rethrow(ex);
+    }
+  }
+
+  /**
+   * Invokes a method without parameters.
+   *
+   * @param target the target object, may be {@code null} for static methods
+   * @return the invocation result, {@code null} for void methods
+   */
+  public Object invoke0(Object target) {
+    if (arity != 0) {
+      throw wrongArity(0);
+    }
+    try {
+      return (Object) handle.invokeExact(target);
+    } catch (Throwable ex) {
+      throw FieldAccessor.rethrow(ex);
+    }
+  }
+
+  /**
+   * Invokes a method with one parameter.
+   *
+   * @param target the target object, may be {@code null} for static methods
+   * @param arg the argument
+   * @return the invocation result, {@code null} for void methods
+   */
+  public Object invoke1(Object target, Object arg) {
+    if (arity != 1) {
+      throw wrongArity(1);
+    }
+    try {
+      return (Object) handle.invokeExact(target, arg);
+    } catch (Throwable ex) {
+      throw FieldAccessor.rethrow(ex);
+    }
+  }
+
+  /**
+   * Invokes a method with two parameters.
+   *
+   * @param target the target object, may be {@code null} for static methods
+   * @param arg1 the first argument
+   * @param arg2 the second argument
+   * @return the invocation result, {@code null} for void methods
+   */
+  public Object invoke2(Object target, Object arg1, Object arg2) {
+    if (arity != 2) {
+      throw wrongArity(2);
+    }
+    try {
+      return (Object) handle.invokeExact(target, arg1, arg2);
+    } catch (Throwable ex) {
+      throw FieldAccessor.rethrow(ex);
+    }
+  }
+
+  /**
+   * Returns the underlying method.
+   */
+  public Method getMethod() {
+    return method;
+  }
+
+  private IllegalArgumentException wrongArity(int length) {
+    return new IllegalArgumentException("Wrong number of arguments: " + length + ", expected " + arity + " for " + method);
+  }
+}
@@ -0,0 +1,324 @@
+package com.github.catstiger.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.zip.ZipException;
+
+/**
+ * 多线程ZIP解压. 各条目在给定的Executor上并行解压, 通过FileChannel写入, 每个条目只占用一个固定大小的缓冲区.
+ * <p>
+ * 解压前后都会检查:
+ * <ul>
+ * <li>条目的路径不能超出解压目录(zip slip), 不能有两个条目解压到同一个文件</li>
+ * <li>单个条目和全部条目的大小上限, 以及压缩率上限, 按照实际解压的字节数检查, 不依赖压缩文件中声明的大小, 防止ZIP炸弹耗尽磁盘</li>
+ * </ul>
+ * 配置完成后可以在多个线程中使用.
+ *
+ * <pre>
+ * new ParallelUnzipper(executor).setIncludes("data/**").setProgressListener(listener).unzip(backup, restoreDir);
+ * </pre>
+ */
+public final class ParallelUnzipper {
+  /**
+   * 默认的压缩率上限
+   */
+  public static final int DEFAULT_MAX_RATIO = 100;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Executor executor;
+
+  private final List<PathMatcher> includes = new ArrayList<>();
+
+  private final List<PathMatcher> excludes = new ArrayList<>();
+
+  private Predicate<ZipIndex.Entry> filter = entry -> true;
+
+  private long maxEntrySize = Long.MAX_VALUE;
+
+  private long maxTotalSize = Long.MAX_VALUE;
+
+  private int maxRatio = DEFAULT_MAX_RATIO;
+
+  private String passwd;
+
+  private ProgressListener progressListener;
+
+  /**
+   * 解压进度, 每解压完成一个文件调用一次, 在解压的线程中调用
+   */
+  @FunctionalInterface
+  public interface ProgressListener {
+    /**
+     * @param entry 解压完成的条目
+     * @param entriesDone 已经解压的文件数
+     * @param totalEntries 要解压的文件数
+     * @param bytesDone 已经解压的字节数
+     * @param totalBytes 要解压的字节数, 按照压缩文件中声明的大小
+     */
+    void onProgress(ZipIndex.Entry entry, long entriesDone, long totalEntries, long bytesDone, long totalBytes);
+  }
+
+  /**
+   * 使用{@link ForkJoinPool#commonPool()}解压
+   */
+  public ParallelUnzipper() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @param executor 执行解压的Executor
+   */
+  public ParallelUnzipper(Executor executor) {
+    if (executor == null) {
+      throw new RuntimeException("Executor must not be null");
+    }
+    this.executor = executor;
+  }
+
+  /**
+   * 只解压名称匹配其中之一的条目, glob格式, 例如 data/**, *.txt
+   */
+  public ParallelUnzipper setIncludes(String... globs) {
+    includes.clear();
+    for (String glob : globs) {
+      includes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+    }
+    return this;
+  }
+
+  /**
+   * 不解压名称匹配其中之一的条目, glob格式
+   */
+  public ParallelUnzipper setExcludes(String... globs) {
+    excludes.clear();
+    for (String glob : globs) {
+      excludes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+    }
+    return this;
+  }
+
+  /**
+   * 只解压符合条件的条目, 与{@link #setIncludes(String...)}, {@link #setExcludes(String...)}同时生效
+   */
+  public ParallelUnzipper setFilter(Predicate<ZipIndex.Entry> filter) {
+    this.filter = filter == null ? entry -> true : filter;
+    return this;
+  }
+
+  /**
+   * 设置单个条目解压后的大小上限, 默认不限
+   */
+  public ParallelUnzipper setMaxEntrySize(long maxEntrySize) {
+    this.maxEntrySize = maxEntrySize;
+    return this;
+  }
+
+  /**
+   * 设置全部条目解压后的大小上限, 默认不限
+   */
+  public ParallelUnzipper setMaxTotalSize(long maxTotalSize) {
+    this.maxTotalSize = maxTotalSize;
+    return this;
+  }
+
+  /**
+   * 设置压缩率(解压后大小/压缩后大小)上限, 默认为{@link #DEFAULT_MAX_RATIO}, 0为不限
+   */
+  public ParallelUnzipper setMaxRatio(int maxRatio) {
+    this.maxRatio = maxRatio;
+    return this;
+  }
+
+  /**
+   * 设置ZIP文件的密码, 用于加密的条目
+   */
+  public ParallelUnzipper setPassword(String passwd) {
+    this.passwd = passwd;
+    return this;
+  }
+
+  public ParallelUnzipper setProgressListener(ProgressListener progressListener) {
+    this.progressListener = progressListener;
+    return this;
+  }
+
+  /**
+   * 解压ZIP文件到指定目录, 目录不存在则创建, 已经存在的文件被覆盖. 任何一个条目解压失败都会停止解压, 已经解压的文件不会被删除.
+   *
+   * @param zip ZIP文件
+   * @param dest 解压目录
+   * @return 解压后的文件, 按照在压缩文件中的顺序, 不包括目录
+   */
+  public File[] unzip(Path zip, Path dest) {
+    ZipIndex index = ZipIndex.of(zip);
+    Path root = dest.toAbsolutePath().normalize();
+    List<ZipIndex.Entry> files = new ArrayList<>();
+    List<Path> targets = new ArrayList<>();
+    Set<Path> unique = new HashSet<>();
+    long totalBytes = 0;
+    try {
+      Files.createDirectories(root);
+      for (ZipIndex.Entry entry : index.getEntries()) {
+        if (!accept(entry)) {
+          continue;
+        }
+        Path target = resolve(root, entry.getName());
+        if (entry.isDirectory()) {
+          Files.createDirectories(target);
+          continue;
+        }
+        if (!unique.add(target)) {
+          throw new ZipException("Duplicate entry " + entry.getName());
+        }
+        checkDeclaredSize(entry);
+        totalBytes += entry.getSize();
+        if (totalBytes > maxTotalSize) {
+          throw new ZipException("Total size of entries exceeds " + maxTotalSize);
+        }
+        files.add(entry);
+        targets.add(target);
+      }
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+
+    Extraction extraction = new Extraction(index, files.size(), totalBytes);
+    CompletableFuture<?>[] futures = new CompletableFuture<?>[files.size()];
+    for (int i = 0; i < futures.length; i++) {
+      ZipIndex.Entry entry = files.get(i);
+      Path target = targets.get(i);
+      futures[i] = CompletableFuture.runAsync(() -> extraction.extract(entry, target), executor);
+    }
+    try {
+      CompletableFuture.allOf(futures).join();
+    } catch (CompletionException e) {
+      extraction.failed = true;
+      throw Exceptions.unchecked(e.getCause());
+    }
+    File[] extracted = new File[targets.size()];
+    for (int i = 0; i < extracted.length; i++) {
+      extracted[i] = targets.get(i).toFile();
+    }
+    return extracted;
+  }
+
+  private boolean accept(ZipIndex.Entry entry) {
+    Path name = Paths.get(entry.getName());
+    if (!includes.isEmpty() && includes.stream().noneMatch(m -> m.matches(name))) {
+      return false;
+    }
+    return excludes.stream().noneMatch(m -> m.matches(name)) && filter.test(entry);
+  }
+
+  /**
+   * Resolves the entry under the root, rejecting names escaping it (zip slip).
+   */
+  static Path resolve(Path root, String name) throws ZipException {
+    Path target = root.resolve(name).normalize();
+    if (!target.startsWith(root) || target.equals(root)) {
+      throw new ZipException("Entry is outside of the target directory: " + name);
+    }
+    return target;
+  }
+
+  private void checkDeclaredSize(ZipIndex.Entry entry) throws ZipException {
+    checkDeclaredSize(entry, maxEntrySize, maxRatio);
+  }
+
+  /**
+   * Checks the sizes declared in the archive before anything is inflated.
+   */
+  static void checkDeclaredSize(ZipIndex.Entry entry, long maxEntrySize, int maxRatio) throws ZipException {
+    if (entry.getSize() > maxEntrySize) {
+      throw new ZipException("Entry " + entry.getName() + " exceeds " + maxEntrySize + " bytes");
+    }
+    if (maxRatio > 0 && entry.getSize() > (double) maxRatio * Math.max(1, entry.getCompressedSize())) {
+      throw new ZipException("Compression ratio of entry " + entry.getName() + " exceeds " + maxRatio);
+    }
+  }
+
+  private class Extraction {
+    private final ZipIndex index;
+
+    private final long totalEntries;
+
+    private final long totalBytes;
+
+    private final AtomicLong entriesDone = new AtomicLong();
+
+    private final AtomicLong bytesDone = new AtomicLong();
+
+    private volatile boolean failed;
+
+    Extraction(ZipIndex index, long totalEntries, long totalBytes) {
+      this.index = index;
+      this.totalEntries = totalEntries;
+      this.totalBytes = totalBytes;
+    }
+
+    void extract(ZipIndex.Entry entry, Path target) {
+      if (failed) {
+        return;
+      }
+      // sizes declared in the archive may lie, the limits are checked against the inflated bytes
+      long limit = Math.min(entry.getSize(), maxEntrySize);
+      byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(entry.getSize(), 1))];
+      long written = 0;
+      try {
+        Files.createDirectories(target.getParent());
+        try (InputStream in = index.openStream(entry, passwd);
+            FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+          int n;
+          while ((n = in.read(buffer)) != -1) {
+            if (failed) {
+              return;
+            }
+            written += n;
+            if (written > limit) {
+              throw new ZipException("Entry " + entry.getName() + " inflates beyond " + limit + " bytes");
+            }
+            if (bytesDone.addAndGet(n) > maxTotalSize) {
+              throw new ZipException("Total size of entries exceeds " + maxTotalSize);
+            }
+            ByteBuffer src = ByteBuffer.wrap(buffer, 0, n);
+            while (src.hasRemaining()) {
+              channel.write(src);
+            }
+          }
+        }
+        if (entry.getLastModified() >= 0) {
+          Files.setLastModifiedTime(target, FileTime.fromMillis(entry.getLastModified()));
+        }
+      } catch (IOException | RuntimeException e) {
+        failed = true;
+        throw Exceptions.unchecked(e);
+      }
+      long done = entriesDone.incrementAndGet();
+      if (progressListener != null) {
+        progressListener.onProgress(entry, done, totalEntries, bytesDone.get(), totalBytes);
+      }
+    }
+  }
+}
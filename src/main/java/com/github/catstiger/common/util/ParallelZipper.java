@@ -0,0 +1,455 @@
+package com.github.catstiger.common.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 多线程ZIP压缩. 文件被切分为固定大小的块, 各块在给定的Executor上并行压缩(每块以前一块的最后32K作为字典, 压缩率接近单线程压缩),
+ * 然后按顺序拼接为标准ZIP文件, 大于4G的文件和压缩包使用Zip64. 已经压缩过的文件类型(zip, jpg, mp4等)直接存储, 不再压缩.
+ * <p>
+ * 同时在压缩中的块数有上限, 内存占用约为 上限 * 块大小 * 2, 与文件大小无关. 不支持密码, 需要加密请使用{@link ZipStreamWriter}.
+ *
+ * <pre>
+ * new ParallelZipper(executor).setLevel(Deflater.BEST_SPEED).zip(exportDir, true, Paths.get("export.zip"));
+ * </pre>
+ *
+ * 配置完成后可以在多个线程中使用.
+ */
+public final class ParallelZipper {
+  /**
+   * 默认的块大小, 1M
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+  /**
+   * 默认直接存储, 不再压缩的文件扩展名
+   */
+  public static final Set<String> DEFAULT_STORED_EXTENSIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("zip", "jar", "war", "gz",
+      "tgz", "bz2", "xz", "7z", "rar", "png", "jpg", "jpeg", "gif", "webp", "mp3", "mp4", "m4a", "mov", "avi", "mkv", "docx", "xlsx", "pptx")));
+
+  /**
+   * Deflate的窗口大小, 每块使用前一块的最后这些字节作为字典
+   */
+  private static final int DICTIONARY_SIZE = 32 * 1024;
+
+  private final Executor executor;
+
+  private int level = 5;
+
+  private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+  private Set<String> storedExtensions = DEFAULT_STORED_EXTENSIONS;
+
+  private int maxPendingChunks = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+  /**
+   * 使用{@link ForkJoinPool#commonPool()}压缩
+   */
+  public ParallelZipper() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @param executor 执行压缩的Executor
+   */
+  public ParallelZipper(Executor executor) {
+    if (executor == null) {
+      throw new RuntimeException("Executor must not be null");
+    }
+    this.executor = executor;
+  }
+
+  /**
+   * 设置压缩级别, 0-9, 默认为5, 与{@link ZipUtil#zip(String, String, boolean, String)}的压缩级别相同
+   */
+  public ParallelZipper setLevel(int level) {
+    if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression level: " + level);
+    }
+    this.level = level;
+    return this;
+  }
+
+  /**
+   * 设置块大小, 默认为{@link #DEFAULT_CHUNK_SIZE}
+   */
+  public ParallelZipper setChunkSize(int chunkSize) {
+    if (chunkSize < DICTIONARY_SIZE) {
+      throw new IllegalArgumentException("Chunk size must be at least " + DICTIONARY_SIZE + ": " + chunkSize);
+    }
+    this.chunkSize = chunkSize;
+    return this;
+  }
+
+  /**
+   * 设置直接存储, 不再压缩的文件扩展名(不区分大小写), 默认为{@link #DEFAULT_STORED_EXTENSIONS}
+   */
+  public ParallelZipper setStoredExtensions(Collection<String> extensions) {
+    this.storedExtensions = Collections.unmodifiableSet(extensions.stream().map(e -> e.toLowerCase(Locale.ROOT)).collect(Collectors.toSet()));
+    return this;
+  }
+
+  /**
+   * 设置同时在压缩中的块数上限, 默认为CPU数的2倍
+   */
+  public ParallelZipper setMaxPendingChunks(int maxPendingChunks) {
+    if (maxPendingChunks <= 0) {
+      throw new IllegalArgumentException("Max pending chunks must be positive: " + maxPendingChunks);
+    }
+    this.maxPendingChunks = maxPendingChunks;
+    return this;
+  }
+
+  /**
+   * 压缩文件或文件夹到指定的ZIP文件, ZIP文件已经存在则覆盖
+   *
+   * @param src 要压缩的文件或文件夹
+   * @param isCreateDir 是否在压缩文件里创建目录,仅在src为目录时有效.<br />
+   *          如果为false,将直接压缩目录下文件到压缩文件.
+   * @param dest 压缩文件
+   */
+  public void zip(Path src, boolean isCreateDir, Path dest) {
+    try {
+      zip(src, isCreateDir, Files.newOutputStream(dest));
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  /**
+   * 压缩文件或文件夹, 写入输出流
+   *
+   * @param src 要压缩的文件或文件夹
+   * @param isCreateDir 是否在压缩文件里创建目录,仅在src为目录时有效.<br />
+   *          如果为false,将直接压缩目录下文件到压缩文件.
+   * @param out 压缩内容写入的流, 完成后关闭
+   */
+  public void zip(Path src, boolean isCreateDir, OutputStream out) {
+    List<Item> items = list(src, isCreateDir);
+    ArrayDeque<Pending> pending = new ArrayDeque<>();
+    Chunks chunks = new Chunks(items);
+    ZipArchiveWriter writer = new ZipArchiveWriter(out);
+    boolean completed = false;
+    try {
+      for (Item item : items) {
+        if (item.directory) {
+          writer.putDirectory(item.name, item.lastModified);
+          continue;
+        }
+        if (item.stored) {
+          // streaming readers need the CRC of stored entries before the data
+          writer.beginStoredEntry(item.name, item.lastModified, crc(item.path), item.size);
+        } else {
+          writer.beginEntry(item.name, item.lastModified, ZipArchiveWriter.DEFLATED, item.size);
+        }
+        long crc = 0;
+        long compressedSize = 0;
+        Chunk chunk;
+        do {
+          while (pending.size() < maxPendingChunks && chunks.hasNext()) {
+            Chunk next = chunks.next();
+            pending.add(new Pending(next, CompletableFuture.supplyAsync(() -> compress(next), executor)));
+          }
+          Pending head = pending.poll();
+          chunk = head.chunk;
+          Compressed compressed = head.future.join();
+          writer.write(compressed.data, compressed.offset, compressed.length);
+          crc = crc32Combine(crc, compressed.crc, chunk.length);
+          compressedSize += compressed.length;
+        } while (!chunk.last);
+        writer.endEntry(crc, compressedSize, item.size);
+      }
+      writer.close();
+      completed = true;
+    } catch (CompletionException e) {
+      throw Exceptions.unchecked(e.getCause());
+    } finally {
+      if (!completed) {
+        // the archive is left without central directory, so that it is not mistaken for a complete one
+        for (Pending p : pending) {
+          p.future.cancel(false);
+        }
+        IOHelper.closeQuietly(out);
+      }
+    }
+  }
+
+  private List<Item> list(Path src, boolean isCreateDir) {
+    List<Item> items = new ArrayList<>();
+    try {
+      if (!Files.isDirectory(src)) {
+        items.add(item(src.getFileName().toString(), src));
+        return items;
+      }
+      Path base = isCreateDir ? src.getParent() : src;
+      try (Stream<Path> paths = Files.walk(src)) {
+        for (Path path : (Iterable<Path>) paths.sorted()::iterator) {
+          String name = ZipStreamWriter.entryName(base, path);
+          if (!name.isEmpty()) {
+            items.add(item(name, path));
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+    return items;
+  }
+
+  private Item item(String name, Path path) throws IOException {
+    Item item = new Item();
+    item.name = name;
+    item.path = path;
+    item.directory = Files.isDirectory(path);
+    item.lastModified = Files.getLastModifiedTime(path).toMillis();
+    if (!item.directory) {
+      item.size = Files.size(path);
+      String fileName = path.getFileName().toString();
+      int dot = fileName.lastIndexOf('.');
+      item.stored = level == Deflater.NO_COMPRESSION
+          || (dot >= 0 && storedExtensions.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT)));
+    }
+    return item;
+  }
+
+  private Compressed compress(Chunk chunk) {
+    Item item = chunk.item;
+    int dictionary = item.stored ? 0 : (int) Math.min(DICTIONARY_SIZE, chunk.offset);
+    byte[] input = new byte[dictionary + chunk.length];
+    try (FileChannel channel = FileChannel.open(item.path, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.wrap(input);
+      long position = chunk.offset - dictionary;
+      while (buffer.hasRemaining()) {
+        int n = channel.read(buffer, position);
+        if (n < 0) {
+          throw new IllegalStateException("File " + item.path + " is changed while zipping");
+        }
+        position += n;
+      }
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(input, dictionary, chunk.length);
+    if (item.stored) {
+      return new Compressed(input, 0, chunk.length, crc.getValue());
+    }
+
+    Deflater deflater = ZipCodecs.deflater(level);
+    try {
+      if (dictionary > 0) {
+        deflater.setDictionary(input, 0, dictionary);
+      }
+      deflater.setInput(input, dictionary, chunk.length);
+      // stored blocks of incompressible data add 5 bytes per 16K
+      byte[] output = new byte[chunk.length + chunk.length / 16000 * 5 + 64];
+      int length = 0;
+      if (chunk.last) {
+        deflater.finish();
+        while (!deflater.finished()) {
+          if (length == output.length) {
+            output = Arrays.copyOf(output, output.length * 2);
+          }
+          length += deflater.deflate(output, length, output.length - length);
+        }
+      } else {
+        // ends at a byte boundary without the final block, so that the next chunk continues the same deflate stream
+        for (;;) {
+          length += deflater.deflate(output, length, output.length - length, Deflater.SYNC_FLUSH);
+          if (length < output.length) {
+            break;
+          }
+          output = Arrays.copyOf(output, output.length * 2);
+        }
+      }
+      return new Compressed(output, 0, length, crc.getValue());
+    } finally {
+      ZipCodecs.release(deflater, level);
+    }
+  }
+
+  private static long crc(Path file) {
+    CRC32 crc = new CRC32();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      for (long position = 0; position < size; position += Hasher.MAP_SIZE) {
+        crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(Hasher.MAP_SIZE, size - position)));
+      }
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * CRC-32 of the concatenation of two blocks, from the CRC-32 of each (crc32_combine of zlib).
+   */
+  static long crc32Combine(long crc1, long crc2, long len2) {
+    if (len2 <= 0) {
+      return crc1;
+    }
+    long[] even = new long[32];
+    long[] odd = new long[32];
+    // operator for one zero bit
+    odd[0] = 0xedb88320L;
+    long row = 1;
+    for (int n = 1; n < 32; n++) {
+      odd[n] = row;
+      row <<= 1;
+    }
+    // operators for two and four zero bits
+    gf2MatrixSquare(even, odd);
+    gf2MatrixSquare(odd, even);
+    do {
+      gf2MatrixSquare(even, odd);
+      if ((len2 & 1) != 0) {
+        crc1 = gf2MatrixTimes(even, crc1);
+      }
+      len2 >>= 1;
+      if (len2 == 0) {
+        break;
+      }
+      gf2MatrixSquare(odd, even);
+      if ((len2 & 1) != 0) {
+        crc1 = gf2MatrixTimes(odd, crc1);
+      }
+      len2 >>= 1;
+    } while (len2 != 0);
+    return crc1 ^ crc2;
+  }
+
+  private static long gf2MatrixTimes(long[] mat, long vec) {
+    long sum = 0;
+    for (int i = 0; vec != 0; i++, vec >>>= 1) {
+      if ((vec & 1) != 0) {
+        sum ^= mat[i];
+      }
+    }
+    return sum;
+  }
+
+  private static void gf2MatrixSquare(long[] square, long[] mat) {
+    for (int n = 0; n < 32; n++) {
+      square[n] = gf2MatrixTimes(mat, mat[n]);
+    }
+  }
+
+  private static class Item {
+    private String name;
+
+    private Path path;
+
+    private boolean directory;
+
+    private long lastModified;
+
+    private long size;
+
+    private boolean stored;
+  }
+
+  private static class Chunk {
+    private final Item item;
+
+    private final long offset;
+
+    private final int length;
+
+    private final boolean last;
+
+    Chunk(Item item, long offset, int length, boolean last) {
+      this.item = item;
+      this.offset = offset;
+      this.length = length;
+      this.last = last;
+    }
+  }
+
+  private static class Compressed {
+    private final byte[] data;
+
+    private final int offset;
+
+    private final int length;
+
+    private final long crc;
+
+    Compressed(byte[] data, int offset, int length, long crc) {
+      this.data = data;
+      this.offset = offset;
+      this.length = length;
+      this.crc = crc;
+    }
+  }
+
+  private static class Pending {
+    private final Chunk chunk;
+
+    private final CompletableFuture<Compressed> future;
+
+    Pending(Chunk chunk, CompletableFuture<Compressed> future) {
+      this.chunk = chunk;
+      this.future = future;
+    }
+  }
+
+  /**
+   * The chunks of the files in order, an empty file has one empty chunk.
+   */
+  private class Chunks {
+    private final List<Item> items;
+
+    private int index = -1;
+
+    private long offset;
+
+    Chunks(List<Item> items) {
+      this.items = items;
+      advance();
+    }
+
+    boolean hasNext() {
+      return index < items.size();
+    }
+
+    Chunk next() {
+      Item item = items.get(index);
+      int length = (int) Math.min(chunkSize, item.size - offset);
+      Chunk chunk = new Chunk(item, offset, length, offset + length >= item.size);
+      offset += length;
+      if (chunk.last) {
+        advance();
+      }
+      return chunk;
+    }
+
+    private void advance() {
+      offset = 0;
+      do {
+        index++;
+      } while (index < items.size() && items.get(index).directory);
+    }
+  }
+}
@@ -1,18 +1,24 @@
 package com.github.catstiger.common.util;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
-
-import org.apache.commons.lang3.ArrayUtils;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 public final class ReflectUtil {
   /**
@@ -26,17 +32,34 @@ public final class ReflectUtil {
 
   private static final Field[] NO_FIELDS = {};
 
+  private static final Class<?>[] NO_PARAMETER_TYPES = {};
+
+  static final Object[] NO_ARGS = {};
+
+  /**
+   * Per-class cache of the reflection metadata. {@link ClassValue} stores the cached values in the classes themselves, so that they do not prevent
+   * classes from being unloaded, for example the classes of a redeployed plugin. Replaced by {@link #clearCache()}.
+   */
+  private static volatile ClassValue<ClassCache> classCache = newClassCache();
+
   /**
-   * Cache for {@link Class#getDeclaredMethods()} plus equivalent default methods from Java 8 based interfaces, allowing for fast iteration.
+   * Classes having cached metadata, weak keys so that unloaded classes disappear. Only touched on cache miss.
    */
-  private static final Map<Class<?>, Method[]> declaredMethodsCache = new ConcurrentHashMap<Class<?>, Method[]>(256);
+  private static final Map<Class<?>, Boolean> cachedClasses = Collections.synchronizedMap(new WeakHashMap<Class<?>, Boolean>());
+
+  private static final LongAdder cacheLookups = new LongAdder();
+
+  private static final LongAdder cacheMisses = new LongAdder();
 
   /**
-   * Cache for {@link Class#getDeclaredFields()}, allowing for fast iteration.
+   * Key of the {@link BeanMapper} which converts all fields.
    */
-  private static final Map<Class<?>, Field[]> declaredFieldsCache = new ConcurrentHashMap<Class<?>, Field[]>(256);
+  private static final Object ALL_FIELDS = new Object();
 
-  private static final Map<Class<?>, Field[]> fieldsCache = new ConcurrentHashMap<Class<?>, Field[]>(256);
+  /**
+   * Field selections cached per class by {@link #mapper(Class, String...)}, so that selections built at runtime can not grow the cache without bound.
+   */
+  static final int MAX_CACHED_MAPPERS = 64;
 
   /**
    * Convenience method to instantiate a class using its no-arg constructor. As this method doesn't try to load classes by name, it should avoid class-loading
@@ -47,20 +70,29 @@ public final class ReflectUtil {
    * @throws RuntimeException if the bean cannot be instantiated
    */
   public static <T> T instantiate(Class<T> clazz) {
+    return instantiator(clazz).get();
+  }
+
+  /**
+   * Returns a cached {@link Supplier} creating instances of the class by its no-arg constructor, which may be non-public. The constructor is resolved
+   * once as a {@link MethodHandle}, so the supplier does not check the access on every call.
+   * 
+   * @param clazz class to instantiate
+   * @return the supplier of new instances
+   * @throws RuntimeException if the class cannot be instantiated
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Supplier<T> instantiator(Class<T> clazz) {
     if (clazz == null) {
       throw new RuntimeException("Class must not be null");
     }
-
-    if (clazz.isInterface()) {
-      throw new RuntimeException("Specified class is an interface [" + clazz.getName() + "]");
-    }
-    try {
-      return clazz.newInstance();
-    } catch (InstantiationException ex) {
-      throw new RuntimeException("Specified class is an abstract class? [" + clazz.getName() + "]", ex);
-    } catch (IllegalAccessException ex) {
-      throw new RuntimeException("Is the constructor accessible? [" + clazz.getName() + "]", ex);
+    ClassCache cache = cache(clazz);
+    Supplier<?> instantiator = cache.instantiator;
+    if (instantiator == null) {
+      instantiator = newInstantiator(clazz);
+      cache.instantiator = instantiator;
     }
+    return (Supplier<T>) instantiator;
   }
 
   /**
@@ -90,15 +122,14 @@ public final class ReflectUtil {
       throw new RuntimeException("Either name or type of the field must be specified");
     }
 
-    Class<?> searchType = clazz;
-    while (Object.class != searchType && searchType != null) {
-      Field[] fields = getDeclaredFields(searchType);
-      for (Field field : fields) {
-        if ((name == null || name.equals(field.getName())) && (type == null || type.equals(field.getType()))) {
-          return field;
-        }
+    Field[] fields = (name == null ? getFields(clazz) : fieldIndex(clazz).get(name));
+    if (fields == null) {
+      return null;
+    }
+    for (Field field : fields) {
+      if (type == null || type.equals(field.getType())) {
+        return field;
       }
-      searchType = searchType.getSuperclass();
     }
     return null;
   }
@@ -108,21 +139,20 @@ public final class ReflectUtil {
    * includes public, protected, default (package) access, and private fields, and includes inherited fields.
    * 
    * @param clazz the supplied {@link Class}
-   * @return the LinkedList of {@code Field} objects representing all the declared fields of this class
+   * @return the array of {@code Field} objects representing all the declared fields of this class
    */
   public static Field[] getFields(Class<?> clazz) {
     if (clazz == null) {
       throw new RuntimeException("Class must not be null");
     }
 
-    if (fieldsCache.containsKey(clazz)) {
-      return fieldsCache.get(clazz);
+    ClassCache cache = cache(clazz);
+    Field[] fields = cache.fields;
+    if (fields == null) {
+      List<Field> fieldList = fields(clazz);
+      fields = (fieldList.isEmpty() ? NO_FIELDS : fieldList.toArray(new Field[fieldList.size()]));
+      cache.fields = fields;
     }
-
-    List<Field> fieldList = fields(clazz);
-    Field[] fields = fieldList.toArray(new Field[] {});
-
-    fieldsCache.put(clazz, fields);
     return fields;
   }
 
@@ -136,12 +166,7 @@ public final class ReflectUtil {
    * @param value the value to set (may be {@code null})
    */
   public static void setField(Field field, Object target, Object value) {
-    try {
-      field.setAccessible(true);
-      field.set(target, value);
-    } catch (IllegalAccessException ex) {
-      throw new IllegalStateException("Unexpected reflection exception - " + ex.getClass().getName() + ": " + ex.getMessage());
-    }
+    accessor(field).set(target, value);
   }
 
   /**
@@ -155,14 +180,31 @@ public final class ReflectUtil {
    * @return the field's current value
    */
   public static Object getField(Field field, Object target) {
-    try {
-      makeAccessible(field);
-      return field.get(target);
-    } catch (IllegalAccessException ex) {
-      throw new IllegalStateException("Unexpected reflection exception - " + ex.getClass().getName() + ": " + ex.getMessage());
+    return accessor(field).get(target);
+  }
+
+  /**
+   * Returns the cached {@link FieldAccessor} of the given field, the accessor is created at the first call.
+   * 
+   * @param field the field to access
+   * @return the accessor of the field, never {@code null}
+   */
+  public static FieldAccessor accessor(Field field) {
+    if (field == null) {
+      throw new RuntimeException("Field must not be null");
     }
+    Map<Field, FieldAccessor> accessors = cache(field.getDeclaringClass()).accessors;
+    FieldAccessor accessor = accessors.get(field);
+    if (accessor == null) {
+      accessor = new FieldAccessor(field);
+      FieldAccessor existing = accessors.putIfAbsent(field, accessor);
+      if (existing != null) {
+        accessor = existing;
+      }
+    }
+    return accessor;
   }
-  
+
   /**
    * 使得给定的构造方法可以被访问
    */
@@ -202,7 +244,7 @@ public final class ReflectUtil {
    * @return the Method object, or {@code null} if none found
    */
   public static Method findMethod(Class<?> clazz, String name) {
-    return findMethod(clazz, name, new Class<?>[0]);
+    return findMethod(clazz, name, NO_PARAMETER_TYPES);
   }
 
   /**
@@ -221,15 +263,17 @@ public final class ReflectUtil {
     if (name == null) {
       throw new RuntimeException("Method name must not be null");
     }
-    Class<?> searchType = clazz;
-    while (searchType != null) {
-      Method[] methods = (searchType.isInterface() ? searchType.getMethods() : getDeclaredMethods(searchType));
-      for (Method method : methods) {
-        if (name.equals(method.getName()) && (paramTypes == null || Arrays.equals(paramTypes, method.getParameterTypes()))) {
-          return method;
-        }
+    Overloads overloads = methodIndex(clazz).get(name);
+    if (overloads == null) {
+      return null;
+    }
+    if (paramTypes == null) {
+      return overloads.methods[0];
+    }
+    for (int i = 0; i < overloads.methods.length; i++) {
+      if (Arrays.equals(paramTypes, overloads.parameterTypes[i])) {
+        return overloads.methods[i];
       }
-      searchType = searchType.getSuperclass();
     }
     return null;
   }
@@ -245,7 +289,7 @@ public final class ReflectUtil {
    * @see #invokeMethod(java.lang.reflect.Method, Object, Object[])
    */
   public static Object invokeMethod(Method method, Object target) {
-    return invokeMethod(method, target, new Object[0]);
+    return invokeMethod(method, target, NO_ARGS);
   }
 
   /**
@@ -266,6 +310,29 @@ public final class ReflectUtil {
     }
   }
 
+  /**
+   * Returns the cached {@link Invoker} of the given method, the invoker is created at the first call. Callers invoking the same method repeatedly
+   * should prefer it to {@link #invokeMethod(Method, Object, Object...)}.
+   * 
+   * @param method the method to invoke
+   * @return the invoker, never {@code null}
+   */
+  public static Invoker invoker(Method method) {
+    if (method == null) {
+      throw new RuntimeException("Method must not be null");
+    }
+    Map<Method, Invoker> invokers = cache(method.getDeclaringClass()).invokers;
+    Invoker invoker = invokers.get(method);
+    if (invoker == null) {
+      invoker = new Invoker(method);
+      Invoker existing = invokers.putIfAbsent(method, invoker);
+      if (existing != null) {
+        invoker = existing;
+      }
+    }
+    return invoker;
+  }
+
   /**
    * Determine whether the given method is a CGLIB 'renamed' method, following the pattern "CGLIB$methodName$0".
    * 
@@ -285,69 +352,199 @@ public final class ReflectUtil {
   }
 
   /**
-   * 将一个Bean转换为Map
+   * 将一个Bean转换为Map. 每次调用都要按照字段名称查找{@link BeanMapper}, 转换大量同一个类的Bean时应该使用{@link #mapper(Class, String...)}并持有返回的BeanMapper
    * 
    * @param bean Object to be mapping.
-   * @param fieldnames 需要转换的字段
+   * @param fieldnames 需要转换的字段, {@code null}表示全部字段
    * @return
    */
+  @SuppressWarnings("unchecked")
   public static Map<String, Object> toMap(Object bean, String... fieldnames) {
     if (bean == null) {
       return Collections.emptyMap();
     }
-    Field[] fields = getFields(bean.getClass());
-    if (fields == null || fields.length == 0) {
+    if (getFields(bean.getClass()).length == 0) {
       return Collections.emptyMap();
     }
-    Map<String, Object> map = new HashMap<>(fields.length);
+    BeanMapper<Object> mapper = (BeanMapper<Object>) mapper(bean.getClass(), fieldnames);
+    return mapper.toMap(bean);
+  }
 
-    for (Field field : fields) {
-      if (fieldnames != null) {
-        if (ArrayUtils.contains(fieldnames, field.getName())) {
-          Object value = getField(field, bean);
-          map.put(field.getName(), value);
-        }
-      } else {
-        Object value = getField(field, bean);
-        map.put(field.getName(), value);
+  /**
+   * Returns the cached {@link BeanMapper} of the given class and field selection, the mapper is compiled at the first call. This is the fast path:
+   * callers converting many beans of the same class should hold the returned mapper, {@link #toMap(Object, String...)} looks it up by the field
+   * names on every call. When {@link #MAX_CACHED_MAPPERS} selections of a class are cached, they are dropped, the selections still in use are cached
+   * again at their next call.
+   * 
+   * @param clazz the bean class
+   * @param fieldnames names of the fields to be converted, {@code null} to convert all fields
+   * @return the mapper, never {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> BeanMapper<T> mapper(Class<T> clazz, String... fieldnames) {
+    if (clazz == null) {
+      throw new RuntimeException("Class must not be null");
+    }
+    Map<Object, BeanMapper<?>> mappers = cache(clazz).mappers;
+    Object key = (fieldnames == null ? ALL_FIELDS : Arrays.asList(fieldnames));
+    BeanMapper<?> mapper = mappers.get(key);
+    if (mapper == null) {
+      mapper = new BeanMapper<T>(clazz, fieldnames);
+      if (mappers.size() >= MAX_CACHED_MAPPERS) {
+        mappers.clear();
+      }
+      // copy the key, the caller may reuse the array
+      Object storedKey = (fieldnames == null ? ALL_FIELDS : Arrays.asList(fieldnames.clone()));
+      BeanMapper<?> existing = mappers.putIfAbsent(storedKey, mapper);
+      if (existing != null) {
+        mapper = existing;
       }
     }
+    return (BeanMapper<T>) mapper;
+  }
 
-    return map;
+  /**
+   * Copies the values of the fields of the source bean to the fields of the same name of the target bean, {@code null} values are not copied.
+   * Fields of incompatible types are copied only if they are numbers, see {@link BeanCopier}.
+   * 
+   * @param src the source bean
+   * @param dest the target bean
+   * @return the target bean
+   */
+  public static <T> T copy(Object src, T dest) {
+    return copy(src, dest, null);
   }
 
-  private static LinkedList<Field> fields(Class<?> clazz) {
-    if (clazz == null) {
+  /**
+   * Copies the values of the fields of the source bean to the fields of the same name of the target bean, {@code null} values are not copied.
+   * 
+   * @param src the source bean
+   * @param dest the target bean
+   * @param converter converts the values of fields of incompatible types, may be {@code null}
+   * @return the target bean
+   */
+  public static <T> T copy(Object src, T dest, BeanCopier.Converter converter) {
+    if (src == null || dest == null) {
+      throw new RuntimeException("Source and target must not be null");
+    }
+    copier(src.getClass(), dest.getClass()).copy(src, dest, converter);
+    return dest;
+  }
+
+  /**
+   * 使用Map中的数据创建一个Bean, Map的key为字段名称
+   * 
+   * @param map the field values
+   * @param clazz the bean class, must have a no-arg constructor
+   * @return the new bean
+   */
+  public static <T> T fromMap(Map<String, ?> map, Class<T> clazz) {
+    return fromMap(map, clazz, null);
+  }
+
+  /**
+   * 使用Map中的数据创建一个Bean, Map的key为字段名称
+   * 
+   * @param map the field values
+   * @param clazz the bean class, must have a no-arg constructor
+   * @param converter converts the values of incompatible types, may be {@code null}
+   * @return the new bean
+   */
+  public static <T> T fromMap(Map<String, ?> map, Class<T> clazz, BeanCopier.Converter converter) {
+    if (map == null) {
+      throw new RuntimeException("Map must not be null");
+    }
+    BeanCopier copier = copier(clazz);
+    T bean = instantiate(clazz);
+    copier.fill(map, bean, converter);
+    return bean;
+  }
+
+  /**
+   * Returns the cached {@link BeanCopier} copying beans of {@code srcClass} to beans of {@code destClass}, the copier is compiled at the first call.
+   * The copier is cached with the class of the descendant class loader, it does not keep a class of a child loader from being unloaded.
+   * 
+   * @param srcClass the source bean class
+   * @param destClass the target bean class
+   * @return the copier, never {@code null}
+   */
+  public static BeanCopier copier(Class<?> srcClass, Class<?> destClass) {
+    if (srcClass == null || destClass == null) {
       throw new RuntimeException("Class must not be null");
     }
-    LinkedList<Field> fields = new LinkedList<Field>();
-    Field[] fs = getDeclaredFields(clazz);
-    if (fs != null) {
-      for (Field f : fs) {
-        fields.add(f);
+    // the copier references both classes, it is cached by the class of the descendant loader, which can not outlive the other class anyway
+    boolean bySource = isAncestor(destClass.getClassLoader(), srcClass.getClassLoader());
+    Map<Class<?>, BeanCopier> copiers = (bySource ? cache(srcClass).copiersTo : cache(destClass).copiers);
+    Class<?> key = (bySource ? destClass : srcClass);
+    BeanCopier copier = copiers.get(key);
+    if (copier == null) {
+      copier = new BeanCopier(srcClass, destClass);
+      BeanCopier existing = copiers.putIfAbsent(key, copier);
+      if (existing != null) {
+        copier = existing;
       }
     }
-    Class<?> searchType = clazz.getSuperclass();
+    return copier;
+  }
+
+  /**
+   * Returns the cached {@link BeanCopier} filling beans of {@code destClass} from {@link Map}, the copier is compiled at the first call.
+   * 
+   * @param destClass the target bean class
+   * @return the copier, never {@code null}
+   */
+  public static BeanCopier copier(Class<?> destClass) {
+    if (destClass == null) {
+      throw new RuntimeException("Class must not be null");
+    }
+    ClassCache cache = cache(destClass);
+    BeanCopier copier = cache.mapCopier;
+    if (copier == null) {
+      copier = new BeanCopier(null, destClass);
+      cache.mapCopier = copier;
+    }
+    return copier;
+  }
 
+  /**
+   * Returns {@code true} if {@code ancestor} is {@code loader} or one of its parents, the bootstrap loader ({@code null}) is the ancestor of all.
+   */
+  private static boolean isAncestor(ClassLoader ancestor, ClassLoader loader) {
+    if (ancestor == null) {
+      return true;
+    }
+    for (ClassLoader cl = loader; cl != null; cl = cl.getParent()) {
+      if (cl == ancestor) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static List<Field> fields(Class<?> clazz) {
+    List<Field> fields = new ArrayList<Field>();
+    Class<?> searchType = clazz;
     while (searchType != null && Object.class != searchType) {
-      fields.addAll(fields(searchType));
+      Collections.addAll(fields, getDeclaredFields(searchType));
       searchType = searchType.getSuperclass();
     }
-
     return fields;
   }
 
   private static Field[] getDeclaredFields(Class<?> clazz) {
-    Field[] result = declaredFieldsCache.get(clazz);
+    ClassCache cache = cache(clazz);
+    Field[] result = cache.declaredFields;
     if (result == null) {
       result = clazz.getDeclaredFields();
-      declaredFieldsCache.put(clazz, (result.length == 0 ? NO_FIELDS : result));
+      result = (result.length == 0 ? NO_FIELDS : result);
+      cache.declaredFields = result;
     }
     return result;
   }
 
   private static Method[] getDeclaredMethods(Class<?> clazz) {
-    Method[] result = declaredMethodsCache.get(clazz);
+    ClassCache cache = cache(clazz);
+    Method[] result = cache.declaredMethods;
     if (result == null) {
       Method[] declaredMethods = clazz.getDeclaredMethods();
       List<Method> defaultMethods = findConcreteMethodsOnInterfaces(clazz);
@@ -362,11 +559,96 @@ public final class ReflectUtil {
       } else {
         result = declaredMethods;
       }
-      declaredMethodsCache.put(clazz, (result.length == 0 ? NO_METHODS : result));
+      result = (result.length == 0 ? NO_METHODS : result);
+      cache.declaredMethods = result;
     }
     return result;
   }
 
+  private static Supplier<Object> newInstantiator(Class<?> clazz) {
+    if (clazz.isInterface()) {
+      throw new RuntimeException("Specified class is an interface [" + clazz.getName() + "]");
+    }
+    if (Modifier.isAbstract(clazz.getModifiers())) {
+      throw new RuntimeException("Specified class is an abstract class? [" + clazz.getName() + "]");
+    }
+    final MethodHandle constructor;
+    try {
+      Constructor<?> ctor = clazz.getDeclaredConstructor();
+      makeAccessible(ctor);
+      constructor = MethodHandles.lookup().unreflectConstructor(ctor).asType(MethodType.methodType(Object.class));
+    } catch (NoSuchMethodException ex) {
+      throw new RuntimeException("No default constructor found [" + clazz.getName() + "]", ex);
+    } catch (IllegalAccessException ex) {
+      throw new RuntimeException("Is the constructor accessible? [" + clazz.getName() + "]", ex);
+    }
+
+    return () -> {
+      try {
+        return (Object) constructor.invokeExact();
+      } catch (Throwable ex) {
+        throw FieldAccessor.rethrow(ex);
+      }
+    };
+  }
+
+  /**
+   * Fields of the class and its superclasses by name, in the search order of {@link #findField(Class, String, Class)}.
+   * A name which is not in the index is a cached negative result.
+   */
+  private static Map<String, Field[]> fieldIndex(Class<?> clazz) {
+    ClassCache cache = cache(clazz);
+    Map<String, Field[]> index = cache.fieldIndex;
+    if (index == null) {
+      Map<String, List<Field>> byName = new LinkedHashMap<String, List<Field>>();
+      for (Field field : getFields(clazz)) {
+        List<Field> fields = byName.get(field.getName());
+        if (fields == null) {
+          fields = new ArrayList<Field>(1);
+          byName.put(field.getName(), fields);
+        }
+        fields.add(field);
+      }
+      index = new HashMap<String, Field[]>(byName.size() * 4 / 3 + 1);
+      for (Map.Entry<String, List<Field>> entry : byName.entrySet()) {
+        index.put(entry.getKey(), entry.getValue().toArray(new Field[entry.getValue().size()]));
+      }
+      cache.fieldIndex = index;
+    }
+    return index;
+  }
+
+  /**
+   * Methods of the class and its superclasses by name, in the search order of {@link #findMethod(Class, String, Class...)}.
+   * A name which is not in the index is a cached negative result.
+   */
+  private static Map<String, Overloads> methodIndex(Class<?> clazz) {
+    ClassCache cache = cache(clazz);
+    Map<String, Overloads> index = cache.methodIndex;
+    if (index == null) {
+      Map<String, List<Method>> byName = new LinkedHashMap<String, List<Method>>();
+      Class<?> searchType = clazz;
+      while (searchType != null) {
+        Method[] methods = (searchType.isInterface() ? searchType.getMethods() : getDeclaredMethods(searchType));
+        for (Method method : methods) {
+          List<Method> overloads = byName.get(method.getName());
+          if (overloads == null) {
+            overloads = new ArrayList<Method>(1);
+            byName.put(method.getName(), overloads);
+          }
+          overloads.add(method);
+        }
+        searchType = searchType.getSuperclass();
+      }
+      index = new HashMap<String, Overloads>(byName.size() * 4 / 3 + 1);
+      for (Map.Entry<String, List<Method>> entry : byName.entrySet()) {
+        index.put(entry.getKey(), new Overloads(entry.getValue()));
+      }
+      cache.methodIndex = index;
+    }
+    return index;
+  }
+
   private static List<Method> findConcreteMethodsOnInterfaces(Class<?> clazz) {
     List<Method> result = null;
     for (Class<?> ifc : clazz.getInterfaces()) {
@@ -382,6 +664,168 @@ public final class ReflectUtil {
     return result;
   }
 
+  /**
+   * Drops all the cached reflection metadata, instantiators, accessors, invokers, mappers and copiers, and resets the statistics.
+   * Objects obtained from the cache before keep working.
+   */
+  public static void clearCache() {
+    classCache = newClassCache();
+    cachedClasses.clear();
+    cacheLookups.reset();
+    cacheMisses.reset();
+  }
+
+  /**
+   * Returns the statistics of the reflection metadata cache since the last {@link #clearCache()}.
+   */
+  public static CacheStats cacheStats() {
+    long lookups = cacheLookups.sum();
+    long misses = cacheMisses.sum();
+    return new CacheStats(Math.max(lookups - misses, 0), misses, cachedClasses.size());
+  }
+
+  private static ClassCache cache(Class<?> clazz) {
+    cacheLookups.increment();
+    return classCache.get(clazz);
+  }
+
+  private static ClassValue<ClassCache> newClassCache() {
+    return new ClassValue<ClassCache>() {
+      @Override
+      protected ClassCache computeValue(Class<?> type) {
+        cacheMisses.increment();
+        cachedClasses.put(type, Boolean.TRUE);
+        return new ClassCache();
+      }
+    };
+  }
+
+  /**
+   * Cached metadata of a class. Lazily computed values may be computed more than once by concurrent callers, all computations yield equal values.
+   */
+  private static final class ClassCache {
+    /**
+     * {@link Class#getDeclaredFields()}, allowing for fast iteration.
+     */
+    volatile Field[] declaredFields;
+
+    /**
+     * Declared fields of the class and its superclasses.
+     */
+    volatile Field[] fields;
+
+    /**
+     * {@link Class#getDeclaredMethods()} plus equivalent default methods from Java 8 based interfaces, allowing for fast iteration.
+     */
+    volatile Method[] declaredMethods;
+
+    /**
+     * Fields of the class and its superclasses by name.
+     */
+    volatile Map<String, Field[]> fieldIndex;
+
+    /**
+     * Methods of the class and its superclasses by name.
+     */
+    volatile Map<String, Overloads> methodIndex;
+
+    /**
+     * Creates instances of the class by its no-arg constructor.
+     */
+    volatile Supplier<?> instantiator;
+
+    /**
+     * Copier filling beans of the class from {@link Map}.
+     */
+    volatile BeanCopier mapCopier;
+
+    /**
+     * Accessors of the fields declared by the class.
+     */
+    final Map<Field, FieldAccessor> accessors = new ConcurrentHashMap<Field, FieldAccessor>();
+
+    /**
+     * Invokers of the methods declared by the class.
+     */
+    final Map<Method, Invoker> invokers = new ConcurrentHashMap<Method, Invoker>();
+
+    /**
+     * Mappers of the class, keyed by the selected field names, limited to about {@link ReflectUtil#MAX_CACHED_MAPPERS}.
+     */
+    final Map<Object, BeanMapper<?>> mappers = new ConcurrentHashMap<Object, BeanMapper<?>>();
+
+    /**
+     * Copiers to the class, keyed by the source class. Used unless the class is loaded by an ancestor of the loader of the source class.
+     */
+    final Map<Class<?>, BeanCopier> copiers = new ConcurrentHashMap<Class<?>, BeanCopier>();
+
+    /**
+     * Copiers from the class, keyed by the target class, when the target class is loaded by the same loader or one of its ancestors. So that a
+     * long-lived target class, a DTO of a parent loader for example, does not keep the source classes of plugins from being unloaded.
+     */
+    final Map<Class<?>, BeanCopier> copiersTo = new ConcurrentHashMap<Class<?>, BeanCopier>();
+  }
+
+  /**
+   * Methods of the same name, with their parameter types cached to avoid the copy made by {@link Method#getParameterTypes()}.
+   */
+  private static final class Overloads {
+    final Method[] methods;
+
+    final Class<?>[][] parameterTypes;
+
+    Overloads(List<Method> methods) {
+      this.methods = methods.toArray(new Method[methods.size()]);
+      this.parameterTypes = new Class<?>[this.methods.length][];
+      for (int i = 0; i < this.methods.length; i++) {
+        parameterTypes[i] = this.methods[i].getParameterTypes();
+      }
+    }
+  }
+
+  /**
+   * Statistics of the reflection metadata cache.
+   */
+  public static final class CacheStats {
+    private final long hitCount;
+
+    private final long missCount;
+
+    private final int size;
+
+    CacheStats(long hitCount, long missCount, int size) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.size = size;
+    }
+
+    /**
+     * Number of lookups which found the metadata of the class already cached.
+     */
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    /**
+     * Number of lookups which created the metadata of the class.
+     */
+    public long getMissCount() {
+      return missCount;
+    }
+
+    /**
+     * Number of classes currently having cached metadata, classes which have been unloaded are not counted.
+     */
+    public int getSize() {
+      return size;
+    }
+
+    @Override
+    public String toString() {
+      return "CacheStats[hitCount=" + hitCount + ", missCount=" + missCount + ", size=" + size + "]";
+    }
+  }
+
   private ReflectUtil() {
 
   }
@@ -0,0 +1,269 @@
+package com.github.catstiger.common.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * SHA-256 tree hash of a file. The file is split into chunks of a fixed size, the chunks are hashed in parallel and the root hash is computed from
+ * the chunk digests. The chunk digests are kept, so that two tree hashes of the same chunk size tell which ranges of a file changed.
+ * <p>
+ * The format is stable, all integers are 8 bytes big-endian:
+ * <ul>
+ * <li>chunk {@code i} covers bytes {@code [i * chunkSize, min((i + 1) * chunkSize, length))}, an empty file has no chunk.</li>
+ * <li>chunk digest: {@code SHA-256(0x00 || chunk bytes)}.</li>
+ * <li>root: {@code SHA-256(0x01 || chunkSize || length || chunk digest 0 || chunk digest 1 || ...)}.</li>
+ * </ul>
+ * The root differs from the plain SHA-256 of the file, and depends on the chunk size.
+ *
+ * @see HashUtil#treeHash(Path)
+ */
+public final class TreeHash {
+  /**
+   * The default chunk size, 4 MB.
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+  private static final byte LEAF = 0x00;
+
+  private static final byte NODE = 0x01;
+
+  private static final int DIGEST_LENGTH = 32;
+
+  /**
+   * Number of chunks hashed by one task without forking.
+   */
+  private static final int THRESHOLD = 2;
+
+  private final int chunkSize;
+
+  private final long length;
+
+  private final byte[][] chunks;
+
+  private final byte[] root;
+
+  private TreeHash(int chunkSize, long length, byte[][] chunks) {
+    this.chunkSize = chunkSize;
+    this.length = length;
+    this.chunks = chunks;
+    this.root = root(chunkSize, length, chunks);
+  }
+
+  /**
+   * Computes the tree hash of the file.
+   *
+   * @param file the file, read through memory-mapped chunks
+   * @param chunkSize size of the chunks in bytes
+   * @param pool the pool hashing the chunks
+   * @return the tree hash
+   */
+  public static TreeHash of(Path file, int chunkSize, ForkJoinPool pool) {
+    if (file == null || pool == null) {
+      throw new RuntimeException("File and pool must not be null");
+    }
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long length = channel.size();
+      long count = (length + chunkSize - 1) / chunkSize;
+      if (count > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Chunk size " + chunkSize + " is too small for " + length + " bytes");
+      }
+      byte[][] chunks = new byte[(int) count][];
+      pool.invoke(new ChunkTask(channel, chunkSize, length, chunks, 0, chunks.length));
+      return new TreeHash(chunkSize, length, chunks);
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  /**
+   * Rebuilds a tree hash from stored chunk digests, e.g. to compare with the current content of a file.
+   *
+   * @param chunkSize size of the chunks in bytes
+   * @param length length of the file
+   * @param chunkDigests the chunk digests, in order
+   * @return the tree hash
+   */
+  public static TreeHash of(int chunkSize, long length, List<byte[]> chunkDigests) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+    }
+    long count = (length + chunkSize - 1) / chunkSize;
+    if (chunkDigests.size() != count) {
+      throw new IllegalArgumentException("Expected " + count + " chunk digests, but got " + chunkDigests.size());
+    }
+    byte[][] chunks = new byte[chunkDigests.size()][];
+    for (int i = 0; i < chunks.length; i++) {
+      byte[] digest = chunkDigests.get(i);
+      if (digest == null || digest.length != DIGEST_LENGTH) {
+        throw new IllegalArgumentException("Invalid chunk digest at " + i);
+      }
+      chunks[i] = digest.clone();
+    }
+    return new TreeHash(chunkSize, length, chunks);
+  }
+
+  /**
+   * Returns the root hash as bytes.
+   */
+  public byte[] getRoot() {
+    return root.clone();
+  }
+
+  /**
+   * Returns the root hash as hex string (all lower-case).
+   */
+  public String getRootHex() {
+    return ByteUtil.toHexString(root);
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  public long getLength() {
+    return length;
+  }
+
+  public int getChunkCount() {
+    return chunks.length;
+  }
+
+  /**
+   * Returns the digest of the chunk at the given index.
+   */
+  public byte[] getChunkDigest(int index) {
+    return chunks[index].clone();
+  }
+
+  /**
+   * Returns the offset of the chunk at the given index in the file.
+   */
+  public long getChunkOffset(int index) {
+    if (index < 0 || index >= chunks.length) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + chunks.length);
+    }
+    return (long) index * chunkSize;
+  }
+
+  /**
+   * Returns the indexes of the chunks differing from the other tree hash, including the chunks present in only one of them.
+   *
+   * @param other tree hash of the same chunk size
+   * @return indexes of the changed chunks, in increasing order
+   */
+  public int[] changedChunks(TreeHash other) {
+    if (other.chunkSize != chunkSize) {
+      throw new IllegalArgumentException("Chunk size differs: " + chunkSize + " and " + other.chunkSize);
+    }
+    int max = Math.max(chunks.length, other.chunks.length);
+    int common = Math.min(chunks.length, other.chunks.length);
+    int[] changed = new int[max];
+    int n = 0;
+    for (int i = 0; i < max; i++) {
+      if (i >= common || !Arrays.equals(chunks[i], other.chunks[i])) {
+        changed[n++] = i;
+      }
+    }
+    return Arrays.copyOf(changed, n);
+  }
+
+  /**
+   * Returns the chunk digests, in order.
+   */
+  public List<byte[]> getChunkDigests() {
+    List<byte[]> digests = new ArrayList<>(chunks.length);
+    for (byte[] chunk : chunks) {
+      digests.add(chunk.clone());
+    }
+    return digests;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof TreeHash)) {
+      return false;
+    }
+    return Arrays.equals(root, ((TreeHash) obj).root);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(root);
+  }
+
+  @Override
+  public String toString() {
+    return "TreeHash[" + getRootHex() + ", chunkSize=" + chunkSize + ", length=" + length + "]";
+  }
+
+  private static byte[] root(int chunkSize, long length, byte[][] chunks) {
+    MessageDigest md = HashUtil.sha256Digest();
+    md.update(NODE);
+    md.update(ByteBuffer.allocate(16).putLong(chunkSize).putLong(length).array());
+    for (byte[] chunk : chunks) {
+      md.update(chunk);
+    }
+    return md.digest();
+  }
+
+  private static class ChunkTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final transient FileChannel channel;
+
+    private final int chunkSize;
+
+    private final long length;
+
+    private final byte[][] chunks;
+
+    private final int from;
+
+    private final int to;
+
+    ChunkTask(FileChannel channel, int chunkSize, long length, byte[][] chunks, int from, int to) {
+      this.channel = channel;
+      this.chunkSize = chunkSize;
+      this.length = length;
+      this.chunks = chunks;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > THRESHOLD) {
+        int mid = (from + to) >>> 1;
+        invokeAll(new ChunkTask(channel, chunkSize, length, chunks, from, mid), new ChunkTask(channel, chunkSize, length, chunks, mid, to));
+        return;
+      }
+      MessageDigest md = HashUtil.sha256Digest();
+      for (int i = from; i < to; i++) {
+        long position = (long) i * chunkSize;
+        try {
+          ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkSize, length - position));
+          md.update(LEAF);
+          md.update(chunk);
+        } catch (IOException e) {
+          throw Exceptions.unchecked(e);
+        }
+        chunks[i] = md.digest();
+      }
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package com.github.catstiger.common.util;
+
+/**
+ * Source of the worker id (shard) of an {@link IdGenerator}. The generator asks for the worker id at the first id generated, not when it is created.
+ * <p>
+ * Implementations may also be registered as {@link java.util.ServiceLoader} services, see {@link WorkerIdProviders#serviceLoader()}.
+ *
+ * @see WorkerIdProviders
+ */
+@FunctionalInterface
+public interface WorkerIdProvider {
+  /**
+   * Returned by providers which can not determine the worker id.
+   */
+  long UNKNOWN = -1;
+
+  /**
+   * Determines the worker id.
+   *
+   * @param maxWorkerId the largest worker id allowed by the id layout
+   * @return the worker id from 0 to {@code maxWorkerId}, or {@link #UNKNOWN}
+   */
+  long getWorkerId(long maxWorkerId);
+}
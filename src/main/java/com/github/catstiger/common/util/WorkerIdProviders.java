@@ -0,0 +1,175 @@
+package com.github.catstiger.common.util;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Factories of the common {@link WorkerIdProvider}s.
+ */
+public final class WorkerIdProviders {
+  private static final Logger logger = LoggerFactory.getLogger(WorkerIdProviders.class);
+
+  /**
+   * System property of the worker id.
+   */
+  public static final String PROPERTY_WORKER_ID = "catstiger.id.worker";
+
+  /**
+   * Environment variable of the worker id.
+   */
+  public static final String ENV_WORKER_ID = "CATSTIGER_ID_WORKER";
+
+  private static final Pattern PATTERN_HOSTNAME = Pattern.compile("^.*\\D+([0-9]+)$");
+
+  /**
+   * Locks held by {@link #fileLease(Path)}, they are released when the JVM exits.
+   */
+  private static final List<FileLock> leases = new CopyOnWriteArrayList<>();
+
+  /**
+   * The provider used by {@link IDUtil}: system property {@value #PROPERTY_WORKER_ID}, environment variable {@value #ENV_WORKER_ID}, the providers
+   * registered to {@link ServiceLoader}, then the trailing digits of the host name.
+   */
+  public static WorkerIdProvider defaults() {
+    return chain(systemProperty(PROPERTY_WORKER_ID), environment(ENV_WORKER_ID), serviceLoader(), hostname());
+  }
+
+  /**
+   * Returns the worker id of the first provider which can determine it.
+   */
+  public static WorkerIdProvider chain(WorkerIdProvider... providers) {
+    return maxWorkerId -> {
+      for (WorkerIdProvider provider : providers) {
+        long id = provider.getWorkerId(maxWorkerId);
+        if (id != WorkerIdProvider.UNKNOWN) {
+          return id;
+        }
+      }
+      return WorkerIdProvider.UNKNOWN;
+    };
+  }
+
+  /**
+   * Always returns the given worker id.
+   */
+  public static WorkerIdProvider fixed(long workerId) {
+    return maxWorkerId -> workerId;
+  }
+
+  /**
+   * Reads the worker id from the given system property.
+   */
+  public static WorkerIdProvider systemProperty(String name) {
+    return maxWorkerId -> parse(System.getProperty(name), "system property " + name);
+  }
+
+  /**
+   * Reads the worker id from the given environment variable.
+   */
+  public static WorkerIdProvider environment(String name) {
+    return maxWorkerId -> parse(System.getenv(name), "environment variable " + name);
+  }
+
+  /**
+   * Asks the {@link WorkerIdProvider}s registered to {@link ServiceLoader}, in the order they are loaded.
+   */
+  public static WorkerIdProvider serviceLoader() {
+    return maxWorkerId -> {
+      for (WorkerIdProvider provider : ServiceLoader.load(WorkerIdProvider.class)) {
+        long id = provider.getWorkerId(maxWorkerId);
+        if (id != WorkerIdProvider.UNKNOWN) {
+          return id;
+        }
+      }
+      return WorkerIdProvider.UNKNOWN;
+    };
+  }
+
+  /**
+   * Takes the trailing digits of the host name as worker id, for example {@code 3} of {@code app-3}. This resolves the local host name, which may
+   * be slow if DNS is slow.
+   */
+  public static WorkerIdProvider hostname() {
+    return maxWorkerId -> {
+      try {
+        String hostname = InetAddress.getLocalHost().getHostName();
+        Matcher matcher = PATTERN_HOSTNAME.matcher(hostname);
+        if (matcher.matches() && matcher.group(1).length() < 10) {
+          long n = Long.parseLong(matcher.group(1));
+          if (n <= maxWorkerId) {
+            logger.info("detect server id from host name {}: {}.", hostname, n);
+            return n;
+          }
+        }
+      } catch (UnknownHostException e) {
+        logger.warn("unable to get host name.");
+      }
+      return WorkerIdProvider.UNKNOWN;
+    };
+  }
+
+  /**
+   * Leases a worker id by locking a file {@code worker-<id>.lock} in the given directory, trying the ids from 0. The lock is held until the JVM
+   * exits, so processes sharing the directory never use the same worker id at the same time.
+   *
+   * @param dir directory of the lock files, created if it does not exist
+   */
+  public static WorkerIdProvider fileLease(Path dir) {
+    return maxWorkerId -> {
+      try {
+        Files.createDirectories(dir);
+        for (long id = 0; id <= maxWorkerId; id++) {
+          FileChannel channel = FileChannel.open(dir.resolve("worker-" + id + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+          FileLock lock = null;
+          try {
+            lock = channel.tryLock();
+          } catch (OverlappingFileLockException e) {
+            // leased by this JVM
+          } finally {
+            if (lock == null) {
+              IOHelper.closeQuietly(channel);
+            }
+          }
+          if (lock != null) {
+            leases.add(lock);
+            logger.info("leased worker id {} in {}.", id, dir);
+            return id;
+          }
+        }
+      } catch (IOException e) {
+        logger.warn("unable to lease worker id in {}: {}", dir, e.getMessage());
+      }
+      return WorkerIdProvider.UNKNOWN;
+    };
+  }
+
+  private static long parse(String value, String source) {
+    if (StringUtils.isBlank(value)) {
+      return WorkerIdProvider.UNKNOWN;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid worker id of " + source + ": " + value, e);
+    }
+  }
+
+  private WorkerIdProviders() {
+  }
+}
@@ -0,0 +1,399 @@
+package com.github.catstiger.common.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the records of a ZIP archive around entry data compressed by the caller: local headers, data descriptors, the central directory and the
+ * end records, switching to Zip64 where sizes, offsets or the number of entries need it. Entry names are written in UTF-8. Not thread-safe.
+ */
+final class ZipArchiveWriter implements Closeable {
+  static final int STORED = 0;
+
+  static final int DEFLATED = 8;
+
+  static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+  static final int LOCAL_HEADER = 0x04034b50;
+
+  static final int DATA_DESCRIPTOR = 0x08074b50;
+
+  static final int CENTRAL_HEADER = 0x02014b50;
+
+  static final int END = 0x06054b50;
+
+  static final int ZIP64_END = 0x06064b50;
+
+  static final int ZIP64_LOCATOR = 0x07064b50;
+
+  static final int ZIP64_EXTRA = 0x0001;
+
+  static final int FLAG_ENCRYPTED = 1;
+
+  static final int FLAG_DESCRIPTOR = 1 << 3;
+
+  static final int FLAG_UTF8 = 1 << 11;
+
+  private static final int VERSION = 20;
+
+  private static final int VERSION_ZIP64 = 45;
+
+  private final OutputStream out;
+
+  private final List<Entry> entries = new ArrayList<>();
+
+  private final ByteBuffer header = ByteBuffer.allocate(128).order(ByteOrder.LITTLE_ENDIAN);
+
+  private long position;
+
+  private Entry current;
+
+  private boolean finished;
+
+  /**
+   * @param out the archive is written to it, closed by {@link #close()}
+   */
+  ZipArchiveWriter(OutputStream out) {
+    this.out = out;
+  }
+
+  /**
+   * Writes a directory entry, a trailing / is added to the name if missing.
+   */
+  void putDirectory(String name, long lastModified) {
+    Entry entry = newEntry(name.endsWith("/") ? name : name + "/", lastModified, STORED);
+    entry.directory = true;
+    writeLocalHeader(entry);
+    entries.add(entry);
+  }
+
+  /**
+   * Writes an entry whose data are all known.
+   *
+   * @param method {@link #STORED} or {@link #DEFLATED}
+   * @param crc CRC-32 of the uncompressed data
+   * @param size size of the uncompressed data
+   * @param data the data, compressed by the method
+   */
+  void putEntry(String name, long lastModified, int method, long crc, long size, ByteBuffer data) {
+    Entry entry = newEntry(name, lastModified, method);
+    entry.crc = crc;
+    entry.size = size;
+    entry.compressedSize = data.remaining();
+    entry.zip64 = size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+    writeLocalHeader(entry);
+    write(data.duplicate());
+    entries.add(entry);
+  }
+
+  /**
+   * Writes an entry held in memory, deflated by a pooled deflater of the given level, or stored when deflating does not make it smaller.
+   */
+  void putBytes(String name, long lastModified, byte[] data, int level) {
+    CRC32 crc = new CRC32();
+    crc.update(data, 0, data.length);
+    Deflater deflater = ZipCodecs.deflater(level);
+    try {
+      deflater.setInput(data);
+      deflater.finish();
+      // give up as soon as the output reaches the size of the input
+      byte[] compressed = new byte[Math.max(64, data.length)];
+      int n = 0;
+      while (!deflater.finished() && n < compressed.length) {
+        n += deflater.deflate(compressed, n, compressed.length - n);
+      }
+      if (deflater.finished() && n < data.length) {
+        putEntry(name, lastModified, DEFLATED, crc.getValue(), data.length, ByteBuffer.wrap(compressed, 0, n));
+      } else {
+        putEntry(name, lastModified, STORED, crc.getValue(), data.length, ByteBuffer.wrap(data));
+      }
+    } finally {
+      ZipCodecs.release(deflater, level);
+    }
+  }
+
+  /**
+   * Starts an entry whose CRC and compressed size are written after the data, by {@link #endEntry(long, long, long)}. Streaming readers only accept
+   * it for {@link #DEFLATED} entries.
+   *
+   * @param method {@link #STORED} or {@link #DEFLATED}
+   * @param size the expected size of the uncompressed data, decides whether the entry uses Zip64
+   */
+  void beginEntry(String name, long lastModified, int method, long size) {
+    Entry entry = newEntry(name, lastModified, method);
+    entry.flags |= FLAG_DESCRIPTOR;
+    entry.zip64 = size >= ZIP64_MAGIC;
+    writeLocalHeader(entry);
+    current = entry;
+  }
+
+  /**
+   * Starts a {@link #STORED} entry whose CRC and size are known, the data are then written by {@link #write(byte[], int, int)} and the entry is
+   * ended by {@link #endEntry(long, long, long)} without data descriptor.
+   */
+  void beginStoredEntry(String name, long lastModified, long crc, long size) {
+    Entry entry = newEntry(name, lastModified, STORED);
+    entry.crc = crc;
+    entry.size = size;
+    entry.compressedSize = size;
+    entry.zip64 = size >= ZIP64_MAGIC;
+    writeLocalHeader(entry);
+    current = entry;
+  }
+
+  /**
+   * Writes data of the current entry, compressed by its method.
+   */
+  void write(byte[] data, int offset, int len) {
+    try {
+      out.write(data, offset, len);
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+    position += len;
+  }
+
+  /**
+   * Ends the current entry, by a data descriptor if it is begun by {@link #beginEntry(String, long, int, long)}.
+   */
+  void endEntry(long crc, long compressedSize, long size) {
+    Entry entry = current;
+    if (entry == null) {
+      throw new IllegalStateException("No entry is begun");
+    }
+    if (!entry.zip64 && (size >= ZIP64_MAGIC || compressedSize >= ZIP64_MAGIC)) {
+      throw new IllegalStateException("Entry " + entry.name + " exceeds 4 GB but was begun with a smaller size");
+    }
+    current = null;
+    if ((entry.flags & FLAG_DESCRIPTOR) == 0) {
+      if (entry.crc != crc || entry.size != size || entry.compressedSize != compressedSize) {
+        throw new IllegalStateException("Entry " + entry.name + " does not match the CRC or size of its header");
+      }
+      entries.add(entry);
+      return;
+    }
+    entry.crc = crc;
+    entry.compressedSize = compressedSize;
+    entry.size = size;
+    header.clear();
+    header.putInt(DATA_DESCRIPTOR).putInt((int) crc);
+    if (entry.zip64) {
+      header.putLong(compressedSize).putLong(size);
+    } else {
+      header.putInt((int) compressedSize).putInt((int) size);
+    }
+    writeHeader(null, null);
+    entries.add(entry);
+  }
+
+  /**
+   * Returns the number of bytes written.
+   */
+  long position() {
+    return position;
+  }
+
+  /**
+   * Writes the central directory and the end records.
+   */
+  void finish() {
+    if (finished) {
+      return;
+    }
+    if (current != null) {
+      throw new IllegalStateException("Entry " + current.name + " is not ended");
+    }
+    long start = position;
+    for (Entry entry : entries) {
+      writeCentralHeader(entry);
+    }
+    long size = position - start;
+    int count = entries.size();
+    if (count >= 0xFFFF || size >= ZIP64_MAGIC || start >= ZIP64_MAGIC) {
+      long zip64End = position;
+      header.clear();
+      header.putInt(ZIP64_END).putLong(44).putShort((short) VERSION_ZIP64).putShort((short) VERSION_ZIP64).putInt(0).putInt(0);
+      header.putLong(count).putLong(count).putLong(size).putLong(start);
+      writeHeader(null, null);
+      header.clear();
+      header.putInt(ZIP64_LOCATOR).putInt(0).putLong(zip64End).putInt(1);
+      writeHeader(null, null);
+    }
+    header.clear();
+    header.putInt(END).putShort((short) 0).putShort((short) 0);
+    header.putShort((short) Math.min(count, 0xFFFF)).putShort((short) Math.min(count, 0xFFFF));
+    header.putInt((int) Math.min(size, ZIP64_MAGIC)).putInt((int) Math.min(start, ZIP64_MAGIC)).putShort((short) 0);
+    writeHeader(null, null);
+    finished = true;
+  }
+
+  /**
+   * Finishes the archive and closes the output.
+   */
+  @Override
+  public void close() {
+    try {
+      finish();
+    } finally {
+      try {
+        out.close();
+      } catch (IOException e) {
+        throw Exceptions.unchecked(e);
+      }
+    }
+  }
+
+  /**
+   * Converts the time to MS-DOS date and time, the earliest is 1980-01-01.
+   */
+  static long dosTime(long millis) {
+    LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    if (time.getYear() < 1980) {
+      return (1 << 21) | (1 << 16);
+    }
+    return (time.getYear() - 1980L) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16 | time.getHour() << 11 | time.getMinute() << 5
+        | time.getSecond() >> 1;
+  }
+
+  /**
+   * Converts MS-DOS date and time to milliseconds.
+   *
+   * @return the time, -1 if the MS-DOS date and time is invalid
+   */
+  static long javaTime(long dosTime) {
+    try {
+      LocalDateTime time = LocalDateTime.of((int) ((dosTime >> 25) & 0x7f) + 1980, (int) ((dosTime >> 21) & 0x0f), (int) ((dosTime >> 16) & 0x1f),
+          (int) ((dosTime >> 11) & 0x1f), (int) ((dosTime >> 5) & 0x3f), (int) ((dosTime << 1) & 0x3e));
+      return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    } catch (DateTimeException e) {
+      return -1;
+    }
+  }
+
+  private Entry newEntry(String name, long lastModified, int method) {
+    if (current != null) {
+      throw new IllegalStateException("Entry " + current.name + " is not ended");
+    }
+    if (finished) {
+      throw new IllegalStateException("Archive is finished");
+    }
+    if (name == null || name.isEmpty()) {
+      throw new RuntimeException("Entry name must not be empty");
+    }
+    Entry entry = new Entry();
+    entry.name = name;
+    entry.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+    entry.time = dosTime(lastModified);
+    entry.method = method;
+    entry.flags = FLAG_UTF8;
+    entry.offset = position;
+    return entry;
+  }
+
+  private void writeLocalHeader(Entry entry) {
+    boolean descriptor = (entry.flags & FLAG_DESCRIPTOR) != 0;
+    header.clear();
+    header.putInt(LOCAL_HEADER).putShort((short) (entry.zip64 ? VERSION_ZIP64 : VERSION)).putShort((short) entry.flags);
+    header.putShort((short) entry.method).putInt((int) entry.time).putInt(descriptor ? 0 : (int) entry.crc);
+    if (entry.zip64) {
+      header.putInt((int) ZIP64_MAGIC).putInt((int) ZIP64_MAGIC);
+    } else {
+      header.putInt((int) entry.compressedSize).putInt((int) entry.size);
+    }
+    header.putShort((short) entry.nameBytes.length).putShort((short) (entry.zip64 ? 20 : 0));
+    ByteBuffer extra = null;
+    if (entry.zip64) {
+      extra = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+      extra.putShort((short) ZIP64_EXTRA).putShort((short) 16).putLong(entry.size).putLong(entry.compressedSize).flip();
+    }
+    writeHeader(entry.nameBytes, extra);
+  }
+
+  private void writeCentralHeader(Entry entry) {
+    boolean zip64Size = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC || entry.zip64;
+    boolean zip64Offset = entry.offset >= ZIP64_MAGIC;
+    ByteBuffer extra = null;
+    if (zip64Size || zip64Offset) {
+      extra = ByteBuffer.allocate(28).order(ByteOrder.LITTLE_ENDIAN);
+      extra.putShort((short) ZIP64_EXTRA).putShort((short) ((zip64Size ? 16 : 0) + (zip64Offset ? 8 : 0)));
+      if (zip64Size) {
+        extra.putLong(entry.size).putLong(entry.compressedSize);
+      }
+      if (zip64Offset) {
+        extra.putLong(entry.offset);
+      }
+      extra.flip();
+    }
+    int version = extra != null ? VERSION_ZIP64 : VERSION;
+    header.clear();
+    header.putInt(CENTRAL_HEADER).putShort((short) version).putShort((short) version).putShort((short) entry.flags);
+    header.putShort((short) entry.method).putInt((int) entry.time).putInt((int) entry.crc);
+    header.putInt((int) (zip64Size ? ZIP64_MAGIC : entry.compressedSize)).putInt((int) (zip64Size ? ZIP64_MAGIC : entry.size));
+    header.putShort((short) entry.nameBytes.length).putShort((short) (extra == null ? 0 : extra.remaining())).putShort((short) 0);
+    // disk number, internal attributes, external attributes (MS-DOS directory flag)
+    header.putShort((short) 0).putShort((short) 0).putInt(entry.directory ? 0x10 : 0);
+    header.putInt((int) (zip64Offset ? ZIP64_MAGIC : entry.offset));
+    writeHeader(entry.nameBytes, extra);
+  }
+
+  private void writeHeader(byte[] name, ByteBuffer extra) {
+    header.flip();
+    write(header);
+    if (name != null) {
+      write(name, 0, name.length);
+    }
+    if (extra != null) {
+      write(extra);
+    }
+  }
+
+  private void write(ByteBuffer data) {
+    if (data.hasArray()) {
+      write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+      data.position(data.limit());
+      return;
+    }
+    byte[] buffer = new byte[Math.min(data.remaining(), 8192)];
+    while (data.hasRemaining()) {
+      int n = Math.min(buffer.length, data.remaining());
+      data.get(buffer, 0, n);
+      write(buffer, 0, n);
+    }
+  }
+
+  private static class Entry {
+    private String name;
+
+    private byte[] nameBytes;
+
+    private long time;
+
+    private int method;
+
+    private int flags;
+
+    private long crc;
+
+    private long compressedSize;
+
+    private long size;
+
+    private long offset;
+
+    private boolean zip64;
+
+    private boolean directory;
+  }
+}
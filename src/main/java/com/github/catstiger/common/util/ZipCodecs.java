@@ -0,0 +1,100 @@
+package com.github.catstiger.common.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Pools of raw (nowrap) {@link Deflater}s and {@link Inflater}s shared by the ZIP utilities. They hold native memory until {@code end()}, creating
+ * one per entry is expensive for many small entries. At most {@link #MAX_POOLED} idle instances of each are kept, the others are ended on release.
+ * <p>
+ * Deflaters are pooled per compression level and never changed with {@link Deflater#setLevel(int)}: the new level is applied lazily by the next
+ * {@code deflate} call, which breaks the continuation of a stream primed with {@link Deflater#setDictionary(byte[])}.
+ */
+final class ZipCodecs {
+  static final int MAX_POOLED = Runtime.getRuntime().availableProcessors() * 2;
+
+  /**
+   * Indexed by level + 1, from {@link Deflater#DEFAULT_COMPRESSION} to {@link Deflater#BEST_COMPRESSION}.
+   */
+  private static final Queue<Deflater>[] DEFLATERS = newQueues(Deflater.BEST_COMPRESSION + 2);
+
+  private static final AtomicInteger[] idleDeflaters = new AtomicInteger[DEFLATERS.length];
+
+  static {
+    for (int i = 0; i < idleDeflaters.length; i++) {
+      idleDeflaters[i] = new AtomicInteger();
+    }
+  }
+
+  private static final Queue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+
+  private static final AtomicInteger idleInflaters = new AtomicInteger();
+
+  private ZipCodecs() {
+  }
+
+  /**
+   * Borrows a raw deflater of the given level, it must be given back by {@link #release(Deflater, int)} with the same level.
+   */
+  static Deflater deflater(int level) {
+    int index = index(level);
+    Deflater deflater = DEFLATERS[index].poll();
+    if (deflater == null) {
+      return new Deflater(level, true);
+    }
+    idleDeflaters[index].decrementAndGet();
+    return deflater;
+  }
+
+  static void release(Deflater deflater, int level) {
+    int index = index(level);
+    deflater.reset();
+    if (idleDeflaters[index].incrementAndGet() <= MAX_POOLED) {
+      DEFLATERS[index].offer(deflater);
+    } else {
+      idleDeflaters[index].decrementAndGet();
+      deflater.end();
+    }
+  }
+
+  /**
+   * Borrows a raw inflater, it must be given back by {@link #release(Inflater)}.
+   */
+  static Inflater inflater() {
+    Inflater inflater = INFLATERS.poll();
+    if (inflater == null) {
+      return new Inflater(true);
+    }
+    idleInflaters.decrementAndGet();
+    return inflater;
+  }
+
+  private static int index(int level) {
+    if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression level: " + level);
+    }
+    return level + 1;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Queue<Deflater>[] newQueues(int n) {
+    Queue<Deflater>[] queues = (Queue<Deflater>[]) new Queue<?>[n];
+    for (int i = 0; i < n; i++) {
+      queues[i] = new ConcurrentLinkedQueue<>();
+    }
+    return queues;
+  }
+
+  static void release(Inflater inflater) {
+    inflater.reset();
+    if (idleInflaters.incrementAndGet() <= MAX_POOLED) {
+      INFLATERS.offer(inflater);
+    } else {
+      idleInflaters.decrementAndGet();
+      inflater.end();
+    }
+  }
+}
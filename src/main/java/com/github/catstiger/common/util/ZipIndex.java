@@ -0,0 +1,867 @@
+package com.github.catstiger.common.util;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import net.lingala.zip4j.ZipFile;
+import net.lingala.zip4j.io.inputstream.ZipInputStream;
+import net.lingala.zip4j.model.FileHeader;
+import net.lingala.zip4j.model.LocalFileHeader;
+
+/**
+ * ZIP压缩文件的索引, 解析一次中央目录(central directory), 之后可以按名称直接读取单个条目, 不需要解压整个文件. 索引按照 文件路径+修改时间+大小
+ * 缓存, 文件被修改后重新解析.
+ * <p>
+ * 存储(STORED)的条目通过内存映射读取, 文件在第一次读取时整个映射一次, 每个映射区域不超过2GB, 所有读取共享这些映射, 随索引一起释放.
+ * 压缩(DEFLATED)的条目从文件的对应区域解压读取, 读取时校验CRC. 加密的条目通过zip4j读取, 需要提供密码.
+ * 没有设置UTF-8标志的条目名称也按照UTF-8解析. 线程安全.
+ * <p>
+ * 也可以通过{@link #of(ByteBuffer)}索引内存中的ZIP数据, 例如从网络接收的压缩文件, 读取时不访问文件系统.
+ *
+ * <pre>
+ * try (InputStream in = ZipIndex.of(archive).openStream("META-INF/MANIFEST.MF")) {
+ *   ...
+ * }
+ * </pre>
+ */
+public final class ZipIndex {
+  /**
+   * 最多缓存的索引数
+   */
+  static final int MAX_CACHED = 256;
+
+  private static final Map<Path, ZipIndex> cache = Collections.synchronizedMap(new LinkedHashMap<Path, ZipIndex>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Path, ZipIndex> eldest) {
+      return size() > MAX_CACHED;
+    }
+  });
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final int INITIAL_ARRAY_SIZE = 1024 * 1024;
+
+  /**
+   * Distance between the starts of the mappings of a file. The mappings are {@link #MAPPING_SIZE} long and overlap, so that any range up to this
+   * size lies within one of them.
+   */
+  private static final long MAPPING_STEP = 1L << 30;
+
+  private static final long MAPPING_SIZE = Integer.MAX_VALUE;
+
+  private final Path path;
+
+  private final ByteBuffer data;
+
+  private final long lastModified;
+
+  private final long length;
+
+  private final List<Entry> entries;
+
+  private final Map<String, Entry> index;
+
+  /**
+   * Mappings of the file, made at the first read of a stored entry.
+   */
+  private volatile ByteBuffer[] mappings;
+
+  private ZipIndex(Path path, ByteBuffer data, long lastModified, long length, List<Entry> entries) {
+    this.path = path;
+    this.data = data;
+    this.lastModified = lastModified;
+    this.length = length;
+    this.entries = Collections.unmodifiableList(entries);
+    this.index = new HashMap<>(entries.size() * 4 / 3 + 1);
+    for (Entry entry : entries) {
+      // the first of duplicated names wins
+      index.putIfAbsent(entry.name, entry);
+    }
+  }
+
+  /**
+   * 返回ZIP文件的索引, 文件未被修改时返回缓存的索引
+   *
+   * @param zip ZIP文件
+   * @return 索引
+   */
+  public static ZipIndex of(Path zip) {
+    Path key = zip.toAbsolutePath().normalize();
+    try {
+      long lastModified = Files.getLastModifiedTime(key).toMillis();
+      long length = Files.size(key);
+      ZipIndex cached = cache.get(key);
+      if (cached != null && cached.lastModified == lastModified && cached.length == length) {
+        return cached;
+      }
+      ZipIndex index = new ZipIndex(key, null, lastModified, length, parse(key));
+      cache.put(key, index);
+      return index;
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  /**
+   * 返回内存中的ZIP数据的索引, 不缓存. 索引共享数据, 使用期间数据不能被修改.
+   *
+   * @param zip ZIP数据, 从position到limit
+   * @return 索引
+   */
+  public static ZipIndex of(ByteBuffer zip) {
+    if (zip == null) {
+      throw new RuntimeException("ZIP data must not be null");
+    }
+    ByteBuffer data = zip.asReadOnlyBuffer().slice();
+    try {
+      return new ZipIndex(null, data, 0L, data.capacity(), parse(source(data), data.capacity(), "ZIP data in memory"));
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  /**
+   * 清除缓存的索引
+   */
+  public static void clearCache() {
+    cache.clear();
+  }
+
+  /**
+   * 返回所有条目, 按照在中央目录中的顺序
+   */
+  public List<Entry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * 返回指定名称的条目, 不存在则返回null
+   */
+  public Entry getEntry(String name) {
+    return index.get(name);
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * ZIP文件的路径, 内存中的ZIP数据为null
+   */
+  public Path getPath() {
+    return path;
+  }
+
+  /**
+   * 读取未加密的条目
+   *
+   * @param name 条目名称
+   * @return 条目内容的输入流, 使用后需要关闭
+   */
+  public InputStream openStream(String name) {
+    return openStream(name, null);
+  }
+
+  /**
+   * 读取条目
+   *
+   * @param name 条目名称
+   * @param passwd ZIP文件的密码, 仅用于加密的条目
+   * @return 条目内容的输入流, 使用后需要关闭
+   */
+  public InputStream openStream(String name, String passwd) {
+    return openStream(require(name), passwd);
+  }
+
+  /**
+   * Reads the given entry of this index, which may not be the first entry of its name.
+   */
+  InputStream openStream(Entry entry, String passwd) {
+    String name = entry.name;
+    if (entry.isEncrypted()) {
+      if (StringUtils.isEmpty(passwd)) {
+        throw new RuntimeException("Entry " + name + " is encrypted, password must not be empty");
+      }
+      return openEncrypted(entry, passwd);
+    }
+    if (entry.method == ZipArchiveWriter.STORED && entry.compressedSize <= Integer.MAX_VALUE) {
+      return new CheckedStream(new ByteBufferInputStream(region(entry)), entry, null);
+    }
+    if (entry.method != ZipArchiveWriter.STORED && entry.method != ZipArchiveWriter.DEFLATED) {
+      throw new UnsupportedOperationException("Compression method " + entry.method + " of entry " + name + " is not supported");
+    }
+    if (data != null) {
+      Inflater inflater = ZipCodecs.inflater();
+      return new CheckedStream(new RawInflaterInputStream(new ByteBufferInputStream(region(entry)), inflater), entry, inflater);
+    }
+    FileChannel channel = null;
+    try {
+      channel = FileChannel.open(path, StandardOpenOption.READ);
+      InputStream in = new RegionInputStream(channel, dataOffset(source(channel), channel.size(), entry), entry.compressedSize);
+      if (entry.method == ZipArchiveWriter.STORED) {
+        return new CheckedStream(in, entry, null);
+      }
+      Inflater inflater = ZipCodecs.inflater();
+      return new CheckedStream(new RawInflaterInputStream(in, inflater), entry, inflater);
+    } catch (IOException | RuntimeException e) {
+      IOHelper.closeQuietly(channel);
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  /**
+   * 读取未加密的条目的全部内容
+   *
+   * @param name 条目名称
+   * @return 条目内容
+   */
+  public byte[] read(String name) {
+    return read(name, null);
+  }
+
+  /**
+   * 读取条目的全部内容
+   *
+   * @param name 条目名称
+   * @param passwd ZIP文件的密码, 仅用于加密的条目
+   * @return 条目内容
+   */
+  public byte[] read(String name, String passwd) {
+    Entry entry = require(name);
+    try (InputStream in = openStream(entry, passwd)) {
+      return readFully(in, entry);
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  /**
+   * 在一次遍历中读取全部加密的条目. 加密的条目由zip4j从头顺序读取, 逐个{@link #read(String, String)}每次都要从头遍历, 读取全部条目为O(n²)
+   *
+   * @param passwd ZIP文件的密码
+   * @return 加密的条目的名称和内容, 不包括目录, 同名的条目只读取第一个
+   */
+  Map<String, byte[]> readEncrypted(String passwd) {
+    if (StringUtils.isEmpty(passwd)) {
+      throw new RuntimeException("Entries are encrypted, password must not be empty");
+    }
+    Map<String, byte[]> contents = new HashMap<>();
+    int expected = 0;
+    for (Entry entry : entries) {
+      if (entry.isEncrypted() && !entry.isDirectory() && index.get(entry.name) == entry) {
+        expected++;
+      }
+    }
+    InputStream src = null;
+    try {
+      src = data != null ? new ByteBufferInputStream(data.duplicate()) : new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+      ZipInputStream in = new ZipInputStream(src, passwd.toCharArray());
+      src = in;
+      LocalFileHeader header;
+      while (contents.size() < expected && (header = in.getNextEntry()) != null) {
+        Entry entry = index.get(header.getFileName());
+        if (entry != null && entry.isEncrypted() && !entry.isDirectory() && !contents.containsKey(entry.name)) {
+          contents.put(entry.name, readFully(in, entry));
+        } else {
+          skipEntry(in);
+        }
+      }
+      if (contents.size() < expected) {
+        throw new ZipException("Encrypted entries not found by their local headers in " + this);
+      }
+      return contents;
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    } finally {
+      IOHelper.closeQuietly(src);
+    }
+  }
+
+  /**
+   * Reads the rest of the entry, zip4j finds the next local header only at the end of the current entry.
+   */
+  private static void skipEntry(InputStream in) throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    while (in.read(buffer) != -1) {
+      // skipped
+    }
+  }
+
+  private static byte[] readFully(InputStream in, Entry entry) throws IOException {
+    if (entry.size > Integer.MAX_VALUE - 8) {
+      throw new IllegalStateException("Entry " + entry.name + " is too large for an array: " + entry.size);
+    }
+    // grown as the data is inflated, a forged size must not allocate more than the data
+    byte[] bytes = new byte[(int) Math.min(entry.size, INITIAL_ARRAY_SIZE)];
+    int n = 0;
+    while (n < entry.size) {
+      if (n == bytes.length) {
+        bytes = Arrays.copyOf(bytes, (int) Math.min(entry.size, 2L * n));
+      }
+      int k = in.read(bytes, n, bytes.length - n);
+      if (k < 0) {
+        throw new EOFException("Unexpected end of entry " + entry.name);
+      }
+      n += k;
+    }
+    if (in.read() != -1) {
+      throw new ZipException("Entry " + entry.name + " is larger than its size " + entry.size);
+    }
+    return bytes;
+  }
+
+  /**
+   * 以内存映射的方式读取存储(STORED)且未加密的条目, 不校验CRC
+   *
+   * @param name 条目名称
+   * @return 只读的条目内容
+   */
+  public ByteBuffer map(String name) {
+    Entry entry = require(name);
+    if (entry.method != ZipArchiveWriter.STORED || entry.isEncrypted()) {
+      throw new UnsupportedOperationException("Only entries stored without encryption can be mapped: " + name);
+    }
+    if (entry.compressedSize > Integer.MAX_VALUE) {
+      throw new UnsupportedOperationException("Entry " + name + " exceeds 2 GB and can not be mapped");
+    }
+    return region(entry);
+  }
+
+  @Override
+  public String toString() {
+    return "ZipIndex[" + (path == null ? "memory" : path) + ", entries=" + entries.size() + "]";
+  }
+
+  private Entry require(String name) {
+    Entry entry = index.get(name);
+    if (entry == null) {
+      throw new RuntimeException("Entry " + name + " not found in " + (path == null ? "ZIP data in memory" : path));
+    }
+    return entry;
+  }
+
+  /**
+   * The data of the entry, a slice of the ZIP data in memory or a mapping of the file.
+   */
+  private ByteBuffer region(Entry entry) {
+    try {
+      if (data != null) {
+        ByteBuffer region = data.duplicate();
+        region.position((int) dataOffset(source(data), data.capacity(), entry));
+        region.limit(region.position() + (int) entry.compressedSize);
+        return region.slice();
+      }
+      long offset = dataOffset(this::readMapped, length, entry);
+      ByteBuffer region = slice(offset, entry.compressedSize);
+      if (region != null) {
+        return region;
+      }
+      // larger than MAPPING_STEP and across two mappings
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, entry.compressedSize);
+      }
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  /**
+   * A slice of the mapping of the file containing the range, {@code null} if no mapping contains it.
+   */
+  private ByteBuffer slice(long position, long size) throws IOException {
+    ByteBuffer[] mapped = mappings();
+    int i = (int) Math.min(position / MAPPING_STEP, mapped.length - 1);
+    long start = i * MAPPING_STEP;
+    if (position < start || position + size > start + mapped[i].capacity()) {
+      return null;
+    }
+    ByteBuffer region = mapped[i].duplicate();
+    region.position((int) (position - start));
+    region.limit(region.position() + (int) size);
+    return region.slice();
+  }
+
+  private void readMapped(ByteBuffer buffer, long position) throws IOException {
+    ByteBuffer src = slice(position, buffer.remaining());
+    if (src == null) {
+      throw new EOFException("Unexpected end of file");
+    }
+    buffer.put(src);
+  }
+
+  /**
+   * Maps the whole file once, instead of a mapping per read which would be released only by GC.
+   */
+  private ByteBuffer[] mappings() throws IOException {
+    ByteBuffer[] mapped = mappings;
+    if (mapped == null) {
+      synchronized (this) {
+        mapped = mappings;
+        if (mapped == null) {
+          try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() != length) {
+              throw new ZipException(path + " is modified after it is indexed");
+            }
+            int count = (length <= MAPPING_SIZE ? 1 : (int) ((length - MAPPING_SIZE + MAPPING_STEP - 1) / MAPPING_STEP) + 1);
+            mapped = new ByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+              long start = i * MAPPING_STEP;
+              // the mappings stay valid after the channel is closed
+              mapped[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAPPING_SIZE, length - start));
+            }
+          }
+          mappings = mapped;
+        }
+      }
+    }
+    return mapped;
+  }
+
+  private InputStream openEncrypted(Entry entry, String passwd) {
+    if (data != null) {
+      return openEncryptedInMemory(entry, passwd);
+    }
+    try {
+      ZipFile zipFile = new ZipFile(path.toFile(), passwd.toCharArray());
+      // matched by the offset too, a name may occur more than once
+      for (FileHeader header : zipFile.getFileHeaders()) {
+        if (header.getOffsetLocalHeader() == entry.localHeaderOffset && entry.name.equals(header.getFileName())) {
+          return zipFile.getInputStream(header);
+        }
+      }
+      throw new RuntimeException("Entry " + entry.name + " not found in " + path);
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  /**
+   * Streams the archive in memory with zip4j up to the entry, which decrypts it and checks its CRC.
+   */
+  private InputStream openEncryptedInMemory(Entry entry, String passwd) {
+    // the entries of the same name before this one are passed over
+    int skip = 0;
+    for (Entry e : entries) {
+      if (e.name.equals(entry.name) && e.localHeaderOffset < entry.localHeaderOffset) {
+        skip++;
+      }
+    }
+    ZipInputStream in = new ZipInputStream(new ByteBufferInputStream(data.duplicate()), passwd.toCharArray());
+    try {
+      LocalFileHeader header;
+      while ((header = in.getNextEntry()) != null) {
+        if (entry.name.equals(header.getFileName()) && skip-- == 0) {
+          return in;
+        }
+        skipEntry(in);
+      }
+      throw new ZipException("Entry " + entry.name + " not found by its local header");
+    } catch (IOException | RuntimeException e) {
+      IOHelper.closeQuietly(in);
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  /**
+   * Offset of the data of the entry, after its local header, whose name and extra field may differ from the central directory.
+   */
+  private long dataOffset(Source source, long size, Entry entry) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN);
+    source.readFully(header, entry.localHeaderOffset);
+    if (header.getInt(0) != ZipArchiveWriter.LOCAL_HEADER) {
+      throw new ZipException("Invalid local header of entry " + entry.name + " in " + this);
+    }
+    long offset = entry.localHeaderOffset + 30 + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+    if (offset + entry.compressedSize > size) {
+      throw new ZipException("Entry " + entry.name + " exceeds the end of " + this);
+    }
+    return offset;
+  }
+
+  private static List<Entry> parse(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return parse(source(channel), channel.size(), path);
+    }
+  }
+
+  private static List<Entry> parse(Source source, long size, Object path) throws IOException {
+    // the end record is 22 bytes followed by a comment of up to 65535 bytes
+    int tail = (int) Math.min(size, 22 + 0xFFFF + 20);
+    ByteBuffer buffer = ByteBuffer.allocate(tail).order(ByteOrder.LITTLE_ENDIAN);
+    source.readFully(buffer, size - tail);
+    int end = -1;
+    for (int i = tail - 22; i >= 0; i--) {
+      if (buffer.getInt(i) == ZipArchiveWriter.END && i + 22 + (buffer.getShort(i + 20) & 0xFFFF) == tail) {
+        end = i;
+        break;
+      }
+    }
+    if (end < 0) {
+      throw new ZipException("Not a ZIP file, end of central directory not found: " + path);
+    }
+    long count = buffer.getShort(end + 10) & 0xFFFF;
+    long directorySize = buffer.getInt(end + 12) & 0xFFFFFFFFL;
+    long directoryOffset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+    if (end >= 20 && buffer.getInt(end - 20) == ZipArchiveWriter.ZIP64_LOCATOR) {
+      ByteBuffer zip64 = ByteBuffer.allocate(56).order(ByteOrder.LITTLE_ENDIAN);
+      source.readFully(zip64, buffer.getLong(end - 20 + 8));
+      if (zip64.getInt(0) != ZipArchiveWriter.ZIP64_END) {
+        throw new ZipException("Invalid Zip64 end of central directory: " + path);
+      }
+      count = zip64.getLong(32);
+      directorySize = zip64.getLong(40);
+      directoryOffset = zip64.getLong(48);
+    }
+    if (directoryOffset + directorySize > size || directorySize > Integer.MAX_VALUE) {
+      throw new ZipException("Invalid central directory: " + path);
+    }
+
+    ByteBuffer directory = ByteBuffer.allocate((int) directorySize).order(ByteOrder.LITTLE_ENDIAN);
+    source.readFully(directory, directoryOffset);
+    List<Entry> entries = new ArrayList<>((int) Math.min(count, directorySize / 46));
+    int p = 0;
+    while (p + 46 <= directorySize && directory.getInt(p) == ZipArchiveWriter.CENTRAL_HEADER) {
+      Entry entry = new Entry();
+      entry.flags = directory.getShort(p + 8) & 0xFFFF;
+      entry.method = directory.getShort(p + 10) & 0xFFFF;
+      entry.lastModified = ZipArchiveWriter.javaTime(directory.getInt(p + 12) & 0xFFFFFFFFL);
+      entry.crc = directory.getInt(p + 16) & 0xFFFFFFFFL;
+      entry.compressedSize = directory.getInt(p + 20) & 0xFFFFFFFFL;
+      entry.size = directory.getInt(p + 24) & 0xFFFFFFFFL;
+      int nameLength = directory.getShort(p + 28) & 0xFFFF;
+      int extraLength = directory.getShort(p + 30) & 0xFFFF;
+      int commentLength = directory.getShort(p + 32) & 0xFFFF;
+      entry.localHeaderOffset = directory.getInt(p + 42) & 0xFFFFFFFFL;
+      int next = p + 46 + nameLength + extraLength + commentLength;
+      if (next > directorySize) {
+        throw new ZipException("Invalid central directory: " + path);
+      }
+      entry.name = new String(directory.array(), p + 46, nameLength, StandardCharsets.UTF_8);
+      readZip64Extra(directory, p + 46 + nameLength, extraLength, entry);
+      entries.add(entry);
+      p = next;
+    }
+    // some writers store the number of entries modulo 65536 instead of using Zip64
+    if (entries.size() < count) {
+      throw new ZipException("Expected " + count + " entries in central directory, but found " + entries.size() + ": " + path);
+    }
+    return entries;
+  }
+
+  private static void readZip64Extra(ByteBuffer directory, int offset, int length, Entry entry) {
+    int end = offset + length;
+    while (offset + 4 <= end) {
+      int id = directory.getShort(offset) & 0xFFFF;
+      int size = directory.getShort(offset + 2) & 0xFFFF;
+      int p = offset + 4;
+      if (id == ZipArchiveWriter.ZIP64_EXTRA) {
+        // only the fields set to 0xFFFFFFFF in the header are present, in this order
+        if (entry.size == ZipArchiveWriter.ZIP64_MAGIC && p + 8 <= end) {
+          entry.size = directory.getLong(p);
+          p += 8;
+        }
+        if (entry.compressedSize == ZipArchiveWriter.ZIP64_MAGIC && p + 8 <= end) {
+          entry.compressedSize = directory.getLong(p);
+          p += 8;
+        }
+        if (entry.localHeaderOffset == ZipArchiveWriter.ZIP64_MAGIC && p + 8 <= end) {
+          entry.localHeaderOffset = directory.getLong(p);
+        }
+        return;
+      }
+      offset = p + size;
+    }
+  }
+
+  /**
+   * Positional reads of the archive, from a file or from memory.
+   */
+  private interface Source {
+    /**
+     * Fills the remaining of the buffer from the position of the archive.
+     */
+    void readFully(ByteBuffer buffer, long position) throws IOException;
+  }
+
+  private static Source source(FileChannel channel) {
+    return (buffer, position) -> {
+      while (buffer.hasRemaining()) {
+        int n = channel.read(buffer, position);
+        if (n < 0) {
+          throw new EOFException("Unexpected end of file");
+        }
+        position += n;
+      }
+    };
+  }
+
+  private static Source source(ByteBuffer data) {
+    return (buffer, position) -> {
+      if (position < 0 || position + buffer.remaining() > data.capacity()) {
+        throw new EOFException("Unexpected end of ZIP data");
+      }
+      ByteBuffer src = data.duplicate();
+      src.position((int) position);
+      src.limit(src.position() + buffer.remaining());
+      buffer.put(src);
+    };
+  }
+
+  /**
+   * ZIP文件中的条目
+   */
+  public static final class Entry {
+    private String name;
+
+    private int flags;
+
+    private int method;
+
+    private long lastModified;
+
+    private long crc;
+
+    private long compressedSize;
+
+    private long size;
+
+    private long localHeaderOffset;
+
+    public String getName() {
+      return name;
+    }
+
+    public boolean isDirectory() {
+      return name.endsWith("/");
+    }
+
+    public boolean isEncrypted() {
+      return (flags & ZipArchiveWriter.FLAG_ENCRYPTED) != 0;
+    }
+
+    /**
+     * 压缩方式, 0为存储(STORED), 8为压缩(DEFLATED)
+     */
+    public int getMethod() {
+      return method;
+    }
+
+    /**
+     * 修改时间(毫秒), 无效时为-1
+     */
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    public long getCrc() {
+      return crc;
+    }
+
+    public long getCompressedSize() {
+      return compressedSize;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  /**
+   * Reads a region of a file by positional reads, the channel is closed with the stream.
+   */
+  private static class RegionInputStream extends InputStream {
+    private final FileChannel channel;
+
+    private long position;
+
+    private final long end;
+
+    RegionInputStream(FileChannel channel, long position, long length) {
+      this.channel = channel;
+      this.position = position;
+      this.end = position + length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (position >= end) {
+        return -1;
+      }
+      int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+      if (n < 0) {
+        throw new EOFException("Unexpected end of file");
+      }
+      position += n;
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+
+  /**
+   * Inflates raw deflate data, giving the inflater one dummy byte after the end of the data as raw inflating requires.
+   */
+  private static class RawInflaterInputStream extends InflaterInputStream {
+    private boolean eof;
+
+    RawInflaterInputStream(InputStream in, Inflater inflater) {
+      super(in, inflater, BUFFER_SIZE);
+    }
+
+    @Override
+    protected void fill() throws IOException {
+      if (eof) {
+        throw new EOFException("Unexpected end of ZLIB input stream");
+      }
+      len = in.read(buf, 0, buf.length);
+      if (len == -1) {
+        buf[0] = 0;
+        len = 1;
+        eof = true;
+      }
+      inf.setInput(buf, 0, len);
+    }
+  }
+
+  /**
+   * Checks the CRC and the size of the entry at the end, and gives the inflater back to the pool on close.
+   */
+  private static class CheckedStream extends FilterInputStream {
+    private final Entry entry;
+
+    private final CRC32 crc = new CRC32();
+
+    private Inflater inflater;
+
+    private long count;
+
+    CheckedStream(InputStream in, Entry entry, Inflater inflater) {
+      super(in);
+      this.entry = entry;
+      this.inflater = inflater;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = in.read(b, off, len);
+      if (n > 0) {
+        crc.update(b, off, n);
+        count += n;
+      } else if (n < 0 && (count != entry.size || crc.getValue() != entry.crc)) {
+        throw new ZipException("Invalid entry " + entry.name + ", expected size " + entry.size + " and CRC " + Long.toHexString(entry.crc)
+            + ", but got " + count + " and " + Long.toHexString(crc.getValue()));
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      // read through, so that the CRC covers all the data
+      byte[] b = new byte[(int) Math.min(n, BUFFER_SIZE)];
+      long skipped = 0;
+      while (skipped < n) {
+        int k = read(b, 0, (int) Math.min(b.length, n - skipped));
+        if (k < 0) {
+          break;
+        }
+        skipped += k;
+      }
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        in.close();
+      } finally {
+        if (inflater != null) {
+          ZipCodecs.release(inflater);
+          inflater = null;
+        }
+      }
+    }
+  }
+}
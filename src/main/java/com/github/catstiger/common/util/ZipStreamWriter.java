@@ -0,0 +1,216 @@
+package com.github.catstiger.common.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+
+import net.lingala.zip4j.io.outputstream.ZipOutputStream;
+import net.lingala.zip4j.model.ZipParameters;
+import net.lingala.zip4j.model.enums.CompressionLevel;
+import net.lingala.zip4j.model.enums.CompressionMethod;
+import net.lingala.zip4j.model.enums.EncryptionMethod;
+
+/**
+ * 流式ZIP写入, 直接把压缩内容写入OutputStream或者Channel, 不需要临时文件. 每个条目都通过固定大小的缓冲区复制, 内存占用与条目大小无关.
+ * 支持密码(ZIP_STANDARD加密), 依赖zip4j.
+ *
+ * <pre>
+ * try (ZipStreamWriter writer = new ZipStreamWriter(response.getOutputStream(), null)) {
+ *   writer.putEntry("report.csv", csv).putTree(attachments, true);
+ * }
+ * </pre>
+ *
+ * 非线程安全.
+ */
+public final class ZipStreamWriter implements Closeable {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final ZipOutputStream out;
+
+  private final ZipParameters parameters;
+
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+
+  /**
+   * 创建不加密的ZIP写入
+   *
+   * @param out 压缩内容写入的流, 关闭ZipStreamWriter时关闭
+   */
+  public ZipStreamWriter(OutputStream out) {
+    this(out, null);
+  }
+
+  /**
+   * @param out 压缩内容写入的流, 关闭ZipStreamWriter时关闭
+   * @param passwd 压缩使用的密码, 为null或者""则不加密
+   */
+  public ZipStreamWriter(OutputStream out, String passwd) {
+    if (out == null) {
+      throw new RuntimeException("Output must not be null");
+    }
+    parameters = new ZipParameters();
+    parameters.setCompressionMethod(CompressionMethod.DEFLATE);
+    parameters.setCompressionLevel(CompressionLevel.NORMAL);
+    try {
+      if (StringUtils.isEmpty(passwd)) {
+        this.out = new ZipOutputStream(out);
+      } else {
+        parameters.setEncryptFiles(true);
+        parameters.setEncryptionMethod(EncryptionMethod.ZIP_STANDARD);
+        this.out = new ZipOutputStream(out, passwd.toCharArray());
+      }
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  /**
+   * @param channel 压缩内容写入的Channel, 关闭ZipStreamWriter时关闭
+   * @param passwd 压缩使用的密码, 为null或者""则不加密
+   */
+  public ZipStreamWriter(WritableByteChannel channel, String passwd) {
+    this(Channels.newOutputStream(channel), passwd);
+  }
+
+  /**
+   * 设置之后写入的条目的压缩级别, 默认为{@link CompressionLevel#NORMAL}
+   */
+  public ZipStreamWriter setCompressionLevel(CompressionLevel level) {
+    parameters.setCompressionLevel(level);
+    return this;
+  }
+
+  /**
+   * 写入一个条目, 内容读取到流结束, 不关闭流
+   *
+   * @param name 条目在压缩文件中的名称, 以/分隔目录
+   * @param in 条目的内容
+   */
+  public ZipStreamWriter putEntry(String name, InputStream in) {
+    return putEntry(name, in, System.currentTimeMillis());
+  }
+
+  /**
+   * 写入一个条目
+   *
+   * @param name 条目在压缩文件中的名称, 以/分隔目录
+   * @param bytes 条目的内容
+   */
+  public ZipStreamWriter putEntry(String name, byte[] bytes) {
+    return putEntry(name, new ByteArrayInputStream(bytes));
+  }
+
+  /**
+   * 写入一个文件作为条目, 使用文件的修改时间
+   *
+   * @param name 条目在压缩文件中的名称, 以/分隔目录
+   * @param file 要压缩的文件
+   */
+  public ZipStreamWriter putEntry(String name, Path file) {
+    try (InputStream in = Files.newInputStream(file)) {
+      return putEntry(name, in, Files.getLastModifiedTime(file).toMillis());
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  /**
+   * 写入一个目录条目
+   *
+   * @param name 目录在压缩文件中的名称, 以/分隔目录
+   */
+  public ZipStreamWriter putDirectory(String name) {
+    ZipParameters entry = new ZipParameters(parameters);
+    entry.setFileNameInZip(name.endsWith("/") ? name : name + "/");
+    // 目录没有内容, 不压缩也不加密
+    entry.setCompressionMethod(CompressionMethod.STORE);
+    entry.setEncryptFiles(false);
+    entry.setEncryptionMethod(EncryptionMethod.NONE);
+    entry.setEntrySize(0);
+    try {
+      out.putNextEntry(entry);
+      out.closeEntry();
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+    return this;
+  }
+
+  /**
+   * 写入文件或者文件夹, 文件夹按照目录结构递归写入
+   *
+   * @param src 要压缩的文件或文件夹
+   * @param isCreateDir 是否在压缩文件里创建目录,仅在src为目录时有效.<br />
+   *          如果为false,将直接压缩目录下文件到压缩文件.
+   */
+  public ZipStreamWriter putTree(Path src, boolean isCreateDir) {
+    if (!Files.isDirectory(src)) {
+      return putEntry(src.getFileName().toString(), src);
+    }
+    Path base = isCreateDir ? src.getParent() : src;
+    try (Stream<Path> paths = Files.walk(src)) {
+      paths.sorted().forEach(path -> {
+        String name = entryName(base, path);
+        if (name.isEmpty()) {
+          // the root when the directory itself is not created
+          return;
+        }
+        if (Files.isDirectory(path)) {
+          putDirectory(name);
+        } else {
+          putEntry(name, path);
+        }
+      });
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+    return this;
+  }
+
+  /**
+   * 写入压缩文件的目录并关闭输出
+   */
+  @Override
+  public void close() {
+    try {
+      out.close();
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+  }
+
+  private ZipStreamWriter putEntry(String name, InputStream in, long lastModified) {
+    if (StringUtils.isEmpty(name)) {
+      throw new RuntimeException("Entry name must not be empty");
+    }
+    ZipParameters entry = new ZipParameters(parameters);
+    entry.setFileNameInZip(name);
+    entry.setLastModifiedFileTime(lastModified);
+    try {
+      out.putNextEntry(entry);
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        out.write(buffer, 0, n);
+      }
+      out.closeEntry();
+    } catch (IOException e) {
+      throw Exceptions.unchecked(e);
+    }
+    return this;
+  }
+
+  static String entryName(Path base, Path path) {
+    String name = (base == null ? path : base.relativize(path)).toString();
+    return File.separatorChar == '/' ? name : name.replace(File.separatorChar, '/');
+  }
+}
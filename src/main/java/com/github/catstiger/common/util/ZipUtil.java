@@ -1,9 +1,15 @@
 package com.github.catstiger.common.util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -21,6 +27,15 @@ import net.lingala.zip4j.model.enums.EncryptionMethod;
  * @author ninemax
  */
 public final class ZipUtil {
+  /**
+   * 在内存中解压时单个条目的默认大小上限, 16MB
+   */
+  public static final long DEFAULT_MAX_ENTRY_SIZE = 16L * 1024 * 1024;
+
+  /**
+   * 在内存中解压时全部条目的默认大小上限, 64MB
+   */
+  public static final long DEFAULT_MAX_TOTAL_SIZE = 64L * 1024 * 1024;
 
   /**
    * 使用给定密码解压指定的ZIP压缩文件到指定目录
@@ -85,6 +100,99 @@ public final class ZipUtil {
     return extractedFiles;
   }
 
+  /**
+   * 多线程解压指定的ZIP压缩文件到指定目录, 各条目并行解压. 条目路径超出解压目录或者压缩率超过{@link ParallelUnzipper#DEFAULT_MAX_RATIO}
+   * 的压缩文件会被拒绝, 需要其他限制或者过滤条目请直接使用{@link ParallelUnzipper}.
+   *
+   * @param zipFile 指定的ZIP压缩文件
+   * @param dest 解压目录
+   * @param passwd ZIP文件的密码, 仅用于加密的条目, 可以为null
+   * @return 解压后文件数组
+   * @see ParallelUnzipper
+   */
+  public static File[] unzipParallel(File zipFile, String dest, String passwd) {
+    return new ParallelUnzipper().setPassword(passwd).unzip(zipFile.toPath(), new File(dest).toPath());
+  }
+
+  /**
+   * 在内存中解压ZIP数据, 不访问文件系统. 未加密的条目使用池化的Inflater解压, 并校验CRC, 加密的条目在一次遍历中全部解密.
+   * 使用默认的大小上限{@link #DEFAULT_MAX_ENTRY_SIZE}, {@link #DEFAULT_MAX_TOTAL_SIZE}和压缩率上限{@link ParallelUnzipper#DEFAULT_MAX_RATIO},
+   * 超出则抛出异常, 参考{@link #unzip(ByteBuffer, String, long, long, int)}
+   *
+   * @param zip ZIP数据
+   * @param passwd ZIP数据的密码, 仅用于加密的条目, 可以为null
+   * @return 条目名称和内容, 按照在压缩文件中的顺序, 不包括目录
+   */
+  public static Map<String, byte[]> unzip(byte[] zip, String passwd) {
+    if (zip == null) {
+      throw new RuntimeException("ZIP data must not be null");
+    }
+    return unzip(ByteBuffer.wrap(zip), passwd);
+  }
+
+  /**
+   * 在内存中解压ZIP数据, 不访问文件系统, 使用默认的上限, 参考{@link #unzip(byte[], String)}
+   *
+   * @param zip ZIP数据, 从position到limit, 解压不改变它的position
+   * @param passwd ZIP数据的密码, 仅用于加密的条目, 可以为null
+   * @return 条目名称和内容, 按照在压缩文件中的顺序, 不包括目录
+   */
+  public static Map<String, byte[]> unzip(ByteBuffer zip, String passwd) {
+    return unzip(zip, passwd, DEFAULT_MAX_ENTRY_SIZE, DEFAULT_MAX_TOTAL_SIZE, ParallelUnzipper.DEFAULT_MAX_RATIO);
+  }
+
+  /**
+   * 在内存中解压ZIP数据, 不访问文件系统. 解压前按照压缩文件中声明的大小检查上限, 之后每个条目解压的字节数不能超过声明的大小,
+   * 防止来自网络的ZIP炸弹耗尽内存.
+   *
+   * @param zip ZIP数据, 从position到limit, 解压不改变它的position
+   * @param passwd ZIP数据的密码, 仅用于加密的条目, 可以为null
+   * @param maxEntrySize 单个条目解压后的大小上限
+   * @param maxTotalSize 全部条目解压后的大小上限
+   * @param maxRatio 压缩率(解压后大小/压缩后大小)上限, 0为不限
+   * @return 条目名称和内容, 按照在压缩文件中的顺序, 不包括目录
+   */
+  public static Map<String, byte[]> unzip(ByteBuffer zip, String passwd, long maxEntrySize, long maxTotalSize, int maxRatio) {
+    ZipIndex index = ZipIndex.of(zip);
+    long totalSize = 0;
+    try {
+      for (ZipIndex.Entry entry : index.getEntries()) {
+        if (entry.isDirectory() || index.getEntry(entry.getName()) != entry) {
+          continue;
+        }
+        ParallelUnzipper.checkDeclaredSize(entry, maxEntrySize, maxRatio);
+        totalSize += entry.getSize();
+        if (totalSize > maxTotalSize) {
+          throw new java.util.zip.ZipException("Total size of entries exceeds " + maxTotalSize);
+        }
+      }
+    } catch (java.util.zip.ZipException e) {
+      throw Exceptions.unchecked(e);
+    }
+    boolean encrypted = index.getEntries().stream().anyMatch(ZipIndex.Entry::isEncrypted);
+    Map<String, byte[]> decrypted = encrypted ? index.readEncrypted(passwd) : Collections.emptyMap();
+    Map<String, byte[]> entries = new LinkedHashMap<>(index.size() * 4 / 3 + 1);
+    for (ZipIndex.Entry entry : index.getEntries()) {
+      String name = entry.getName();
+      if (!entry.isDirectory() && !entries.containsKey(name)) {
+        entries.put(name, entry.isEncrypted() ? decrypted.get(name) : index.read(name, passwd));
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * 读取ZIP压缩文件中的单个条目, 不解压其他条目. ZIP文件的索引会被缓存, 参考{@link ZipIndex}
+   * 
+   * @param zipFile 指定的ZIP压缩文件
+   * @param name 条目名称
+   * @param passwd ZIP文件的密码, 仅用于加密的条目, 可以为null
+   * @return 条目内容的输入流, 使用后需要关闭
+   */
+  public static InputStream openEntry(File zipFile, String name, String passwd) {
+    return ZipIndex.of(zipFile.toPath()).openStream(name, passwd);
+  }
+
   /**
    * 压缩指定文件到当前文件夹
    * 
@@ -164,6 +272,80 @@ public final class ZipUtil {
     return null;
   }
 
+  /**
+   * 使用给定密码压缩指定文件或文件夹, 直接写入输出流, 不产生临时文件, 适用于HTTP下载等场景.
+   * 
+   * @param src 要压缩的文件或文件夹
+   * @param out 压缩内容写入的流, 完成后关闭
+   * @param isCreateDir 是否在压缩文件里创建目录,仅在压缩文件为目录时有效.<br />
+   *          如果为false,将直接压缩目录下文件到压缩文件.
+   * @param passwd 压缩使用的密码, 为null或者""则不加密
+   * @see ZipStreamWriter
+   */
+  public static void zip(File src, OutputStream out, boolean isCreateDir, String passwd) {
+    try (ZipStreamWriter writer = new ZipStreamWriter(out, passwd)) {
+      writer.putTree(src.toPath(), isCreateDir);
+    }
+  }
+
+  /**
+   * 在内存中压缩, 不访问文件系统. 不加密时使用池化的Deflater, 压缩后没有变小的条目以存储(STORED)方式写入.
+   *
+   * @param entries 条目名称和内容, 按照迭代顺序写入, 名称以/结尾的为目录, 内容被忽略
+   * @param passwd 压缩使用的密码, 为null或者""则不加密
+   * @return ZIP数据
+   */
+  public static byte[] zip(Map<String, byte[]> entries, String passwd) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    long now = System.currentTimeMillis();
+    if (StringUtils.isEmpty(passwd)) {
+      try (ZipArchiveWriter writer = new ZipArchiveWriter(out)) {
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+          if (entry.getKey().endsWith("/")) {
+            writer.putDirectory(entry.getKey(), now);
+          } else {
+            writer.putBytes(entry.getKey(), now, requireBytes(entry), CompressionLevel.NORMAL.getLevel());
+          }
+        }
+      }
+    } else {
+      try (ZipStreamWriter writer = new ZipStreamWriter(out, passwd)) {
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+          if (entry.getKey().endsWith("/")) {
+            writer.putDirectory(entry.getKey());
+          } else {
+            writer.putEntry(entry.getKey(), requireBytes(entry));
+          }
+        }
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] requireBytes(Map.Entry<String, byte[]> entry) {
+    if (entry.getValue() == null) {
+      throw new RuntimeException("Content of entry " + entry.getKey() + " must not be null");
+    }
+    return entry.getValue();
+  }
+
+  /**
+   * 多线程压缩指定文件或文件夹到指定位置, 不支持密码. dest的规则同{@link #zip(String, String, boolean, String)}.
+   * 
+   * @param src 要压缩的文件或文件夹路径
+   * @param dest 压缩文件存放路径
+   * @param isCreateDir 是否在压缩文件里创建目录,仅在压缩文件为目录时有效.<br />
+   *          如果为false,将直接压缩目录下文件到压缩文件.
+   * @return 最终的压缩文件存放的绝对路径
+   * @see ParallelZipper
+   */
+  public static String zipParallel(String src, String dest, boolean isCreateDir) {
+    File srcFile = new File(src);
+    dest = buildDestinationZipFilePath(srcFile, dest);
+    new ParallelZipper().zip(srcFile.toPath(), isCreateDir, new File(dest).toPath());
+    return dest;
+  }
+
   /**
    * 构建压缩文件存放路径,如果不存在将会创建 传入的可能是文件名或者目录,也可能不传,此方法用以转换最终压缩文件的存放路径
    * 